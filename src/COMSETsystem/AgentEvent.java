@@ -2,6 +2,7 @@ package COMSETsystem;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,10 +26,15 @@ import java.util.logging.Logger;
  * is executed. The searching ends when the agent is assigned to a resource, in which case the AgentEvent
  * is set to be triggered at the time when the agent drops off the resource to its destination.
  * 
+ * If the agent hands over a whole route through agent.nextRoute(), the AgentEvent is only triggered again when
+ * the agent reaches the end of that route. The agent's location in between is computed from the route when it
+ * is needed for an assignment (see roadAt() and roadEndTimeAt()).
+ * 
  * In the case that the agent drops off a resource, the AgentEvent checks if there are waiting resources. If so,
  * the AgentEvent assigns the agent to the closest waiting resource if the travel time from the agent's current location 
  * to the resource is smaller than the resource's remaining life time. Otherwise the AgentEvent moves the agent to 
- * the end intersection of the current road. 
+ * the end intersection of the current road. With batch dispatching (see BatchEvent), the agent does not look
+ * for waiting resources but always moves on and waits for the next batch.
  */
 public class AgentEvent extends Event {
 
@@ -36,6 +42,12 @@ public class AgentEvent extends Event {
 	public final static int INTERSECTION_REACHED = 0;
 	public final static int DROPPING_OFF = 1;
 
+	// The number of agent events created so far
+	private static int maxIndex = 0;
+
+	// A dense index among all agent events, in id order (see IndexedEventSet).
+	final int index;
+
 	// The location at which the event is triggered.
 	LocationOnRoad loc;
 
@@ -51,6 +63,19 @@ public class AgentEvent extends Event {
 	 */
 	long startSearchTime;
 
+	// The roads of a route committed through agent.nextRoute() and the times at which the agent reaches the end
+	// of each of them. Both are null if the agent is not following a committed route.
+	Road[] routeRoads;
+	long[] routeEndTimes;
+
+	// The index in routeRoads of the road that the agent was last located on.
+	int routeCursor;
+
+	// The intersection of the EmptyAgentIndex bucket that the agent is in, or null if the agent is not indexed,
+	// and the time at which the agent reaches that intersection.
+	Intersection indexedIntersection;
+	long indexedEndTime;
+
 	/**
 	 * Constructor for class AgentEvent.
 	 *
@@ -59,13 +84,15 @@ public class AgentEvent extends Event {
 	 */
 	public AgentEvent(LocationOnRoad loc, long startedSearch, Simulator simulator) {
 		super(startedSearch, simulator);
+		this.index = maxIndex++;
 		this.loc = loc;
 		this.startSearchTime = startedSearch;
 		this.eventCause = DROPPING_OFF; // The introduction of an agent is considered a drop-off event.
 		simulator.emptyAgents.add(this); 
+		simulator.matcher.onAgentEmpty(this, startedSearch);
 		try {
 			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMap.class);
-			agent = cons.newInstance(id, simulator.mapForAgents);
+			agent = cons.newInstance(id, simulator.map);
 		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
 			e.printStackTrace();
 		}		
@@ -77,7 +104,7 @@ public class AgentEvent extends Event {
 	public void initAgent() {
 		try {
 			Constructor<? extends BaseAgent> cons = simulator.agentClass.getConstructor(Long.TYPE, CityMap.class);
-			agent = cons.newInstance(id, simulator.mapForAgents);
+			agent = cons.newInstance(id, simulator.map);
 		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
 			e.printStackTrace();
 		}
@@ -103,9 +130,14 @@ public class AgentEvent extends Event {
 	Event intersectionReachedHandler() throws Exception{
 		assert loc.travelTimeFromStartIntersection == loc.road.travelTime : "Agent not at an intersection.";
 
+		// Ask the agent whether it wants to commit to a whole route.
+		List<Intersection> route = agent.nextRoute(loc, time);
+		if (route != null) {
+			return routeCommittedHandler(route);
+		}
+
 		// Ask the agent to choose the next intersection to move to.
-		LocationOnRoad locAgentCopy = simulator.agentCopy(loc);
-		Intersection nextIntersection = agent.nextIntersection(locAgentCopy, time);
+		Intersection nextIntersection = agent.nextIntersection(loc, time);
 		if (nextIntersection == null) {
 			throw new Exception("agent.move() did not return a next location");
 		}
@@ -115,15 +147,97 @@ public class AgentEvent extends Event {
 		}
 
 		// set location and time of the next trigger
+		long currentTime = time;
 		Road nextRoad = loc.road.to.roadTo(nextIntersection);
 		LocationOnRoad nextLocation = new LocationOnRoad(nextRoad, nextRoad.travelTime);
 		setEvent(time + nextRoad.travelTime, nextLocation, INTERSECTION_REACHED);
+		simulator.matcher.onAgentMove(this, currentTime);
 		
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Move to " + nextRoad.to, this);
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next trigger time = " + time, this);
 		return this;
 	}
 
+	/*
+	 * Set up the single event that brings the agent to the end of a committed route.
+	 */
+	Event routeCommittedHandler(List<Intersection> route) throws Exception {
+		if (route.isEmpty()) {
+			throw new Exception("agent.nextRoute() returned an empty route");
+		}
+
+		Road[] roads = new Road[route.size()];
+		long[] endTimes = new long[route.size()];
+		Intersection currentIntersection = loc.road.to;
+		long endTime = time;
+		int i = 0;
+		for (Intersection nextIntersection : route) {
+			if (!currentIntersection.isAdjacent(nextIntersection)) {
+				throw new Exception("move not made to an adjacent location");
+			}
+			Road nextRoad = currentIntersection.roadTo(nextIntersection);
+			endTime += nextRoad.travelTime;
+			roads[i] = nextRoad;
+			endTimes[i] = endTime;
+			currentIntersection = nextRoad.to;
+			i++;
+		}
+
+		// set location and time of the next trigger to the end of the route
+		long currentTime = time;
+		Road lastRoad = roads[roads.length - 1];
+		setEvent(endTime, new LocationOnRoad(lastRoad, lastRoad.travelTime), INTERSECTION_REACHED);
+		routeRoads = roads;
+		routeEndTimes = endTimes;
+		routeCursor = 0;
+		simulator.matcher.onAgentMove(this, currentTime);
+
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Committed route of " + roads.length + " roads to " + lastRoad.to, this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next trigger time = " + time, this);
+		return this;
+	}
+
+	/*
+	 * Move the cursor of a committed route to the road that the agent is on at currentTime. If the agent
+	 * reaches the end of a road exactly at currentTime, it is considered to be still on that road, the same
+	 * way as agent.time is the arrival time at the end intersection of loc.road for an agent moving one
+	 * intersection at a time.
+	 */
+	private void advanceRoute(long currentTime) {
+		while (routeEndTimes[routeCursor] < currentTime) {
+			routeCursor++;
+		}
+	}
+
+	/**
+	 * Get the road that an empty agent is on at the given time, which must not be later than the
+	 * trigger time of this event.
+	 * 
+	 * @param currentTime the current simulation time
+	 * @return the road the agent is on
+	 */
+	Road roadAt(long currentTime) {
+		if (routeRoads == null) {
+			return loc.road;
+		}
+		advanceRoute(currentTime);
+		return routeRoads[routeCursor];
+	}
+
+	/**
+	 * Get the time at which an empty agent reaches the end intersection of roadAt(currentTime).
+	 * 
+	 * @param currentTime the current simulation time
+	 * @return the arrival time at the end intersection of the road the agent is on
+	 */
+	long roadEndTimeAt(long currentTime) {
+		if (routeRoads == null) {
+			return time;
+		}
+		advanceRoute(currentTime);
+		return routeEndTimes[routeCursor];
+	}
+
 	/*
 	 * The handler of a DROPPING_OFF event.
 	 */
@@ -131,55 +245,33 @@ public class AgentEvent extends Event {
 		startSearchTime = time;
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Dropoff at " + loc, this);
 		// Only check the following when an agent drops off a resource. 
-		// Check if there are resources waiting to be picked up by an agent.
-		if (simulator.waitingResources.size() > 0) {
+		// Check if there are resources waiting to be picked up by an agent. With batch dispatching the
+		// agent waits for the next BatchEvent instead.
+		if (simulator.batchWindow == 0 && simulator.waitingResources.size() > 0) {
 			// get the closest resource that will not expire before the agent reaches it
-			ResourceEvent bestResource = null;
-			long earliest = Long.MAX_VALUE;
-			for (ResourceEvent res : simulator.waitingResources) {
-				// If res is in waitingResources, then it must have not expired yet
-				// testing null pointer exception 
-				long travelTime = Long.MAX_VALUE;
-				if (loc == null) {
-					System.out.println("loc is null");
-				} else if (res.pickupLoc == null) {
-					System.out.println("res.loc is null");
-				} else {
-					travelTime = simulator.map.travelTimeBetween(loc, res.pickupLoc);
-				}
-
-				if (travelTime != Long.MAX_VALUE) {
-					// if the resource is reachable before expiration
-					long arriveTime = time + travelTime;
-					if (arriveTime <= res.expirationTime && arriveTime < earliest) {
-						earliest = arriveTime;
-						bestResource = res;
-					}
-				}
-			}
+			ResourceEvent bestResource = simulator.matcher.findResourceFor(this);
 
 			// if a a waiting resource is reachable in time by this agent make an assignment
 			if (bestResource != null) {
+				long earliest = time + simulator.map.travelTimeBetween(loc, bestResource.pickupLoc);
+
 				// update the statistics				
 				long cruiseTime = time - startSearchTime; 
 				long approachTime = earliest - time;
 				long searchTime = cruiseTime + approachTime;
 				long waitTime = earliest - bestResource.availableTime;
-				simulator.totalAgentCruiseTime += cruiseTime;
-				simulator.totalAgentApproachTime += approachTime;
-				simulator.totalAgentSearchTime += searchTime;
-				simulator.totalAssignments++;
-				simulator.totalResourceWaitTime += waitTime;
-				simulator.totalResourceTripTime += bestResource.tripTime;
+				simulator.recordAssignment(cruiseTime, approachTime, waitTime, bestResource.tripTime);
 
 				// Inform the assignment to the agent.
 	            assignedTo(loc, time, bestResource.id, bestResource.pickupLoc, bestResource.dropoffLoc);
 
 				// "Label" the agent as occupied
 				simulator.emptyAgents.remove(this);
+				simulator.matcher.onAgentAssigned(this);
 
 				simulator.waitingResources.remove(bestResource);
-				simulator.events.remove(bestResource); // resource is pickup and does not expire anymore. 
+				simulator.matcher.onResourceAssigned(bestResource);
+				simulator.expirations.remove(bestResource); // resource is pickup and does not expire anymore. 
 
 				// set time and location of the next trigger 
 				setEvent(earliest + bestResource.tripTime, bestResource.dropoffLoc, DROPPING_OFF);
@@ -195,8 +287,7 @@ public class AgentEvent extends Event {
 				return this;
 			} else {
 				// Let agent plan a search route after the current dropoff.
-				LocationOnRoad locAgentCopy = simulator.agentCopy(loc);
-				agent.planSearchRoute(locAgentCopy, time);
+				agent.planSearchRoute(loc, time);
 			}
 		}
 
@@ -207,23 +298,24 @@ public class AgentEvent extends Event {
 			simulator.emptyAgents.add(this);
 		}
 		// move to the end intersection of the current road
+		long currentTime = time;
 		long nextEventTime = time + loc.road.travelTime - loc.travelTimeFromStartIntersection;
 		LocationOnRoad nextLoc = new LocationOnRoad(loc.road, loc.road.travelTime);
 		setEvent(nextEventTime, nextLoc, INTERSECTION_REACHED);
+		simulator.matcher.onAgentEmpty(this, currentTime);
 
 		return this;
 	}
 
 	public void assignedTo(LocationOnRoad currentLocation, long currentTime, long resourceId, LocationOnRoad resourcePickupLocation, LocationOnRoad resourceDropoffLocation) {
-		LocationOnRoad currentLocationAgentCopy = simulator.agentCopy(currentLocation);
-		LocationOnRoad resourcePickupLocationAgentCopy = simulator.agentCopy(resourcePickupLocation);
-		LocationOnRoad resourceDropoffLocationAgentCopy = simulator.agentCopy(resourceDropoffLocation);
-		agent.assignedTo(currentLocationAgentCopy, currentTime, resourceId, resourcePickupLocationAgentCopy, resourceDropoffLocationAgentCopy);
+		agent.assignedTo(currentLocation, currentTime, resourceId, resourcePickupLocation, resourceDropoffLocation);
 	}
 	
 	public void setEvent(long time, LocationOnRoad loc, int eventCause) {
 		this.time = time;
 		this.loc = loc;
 		this.eventCause = eventCause;
+		this.routeRoads = null;
+		this.routeEndTimes = null;
 	}
 }
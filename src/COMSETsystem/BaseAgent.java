@@ -1,5 +1,7 @@
 package COMSETsystem;
 
+import java.util.List;
+
 /**
  * The BaseAgent class is the class the participants should extend in order to create an Agent that will be used in
  * Simulator to run the simulation. The participants should extend the BaseAgent class to implement their agent search
@@ -49,6 +51,28 @@ public abstract class BaseAgent {
 	 */
 	public abstract Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime); 
 
+	/**
+	 * This is an optional callback method which lets an agent hand a whole route to the Simulator at once instead of
+	 * one intersection at a time. It is called whenever the agent is empty and reaches an intersection, before
+	 * nextIntersection. If a list of intersections is returned, the Simulator moves the agent along all of them
+	 * without further callbacks and calls this method again when the last one is reached. The first intersection
+	 * must be adjacent to the end intersection of the current road, and every following intersection must be
+	 * adjacent to the one before it.
+	 * 
+	 * The agent can still be assigned to a resource anywhere along the route. In that case assignedTo is called
+	 * with the agent's location at the time of the assignment and the rest of the route is discarded.
+	 * 
+	 * The default implementation returns null, which means that the agent is moved using nextIntersection.
+	 * See UserExamples.AgentRandomDestination for an example.
+	 *
+	 * @param currentLocation The agent's location at the time when the method is called 
+	 * @param currentTime The time at which the method is invoked
+	 * @return the intersections that the Agent is going to move through, or null to use nextIntersection instead
+	 */
+	public List<Intersection> nextRoute(LocationOnRoad currentLocation, long currentTime) {
+		return null;
+	}
+
 	/**
 	 * This method is to inform the agent that it is assigned to a resource. No action is necessary from the agent. The agent
 	 * will be automatically moved to the destination of the resource. The method is provided in case that the agent wants to use
@@ -0,0 +1,193 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The BatchEvent class represents the moments at which the Assignment Authority dispatches agents in batches.
+ * It is only used when a batch window is configured (see comset.batch_window in etc/config.properties).
+ *
+ * With batch dispatching, a resource that becomes available and an agent that drops off a resource are not
+ * matched right away. Instead, they wait until the next BatchEvent, which is triggered once every batch window.
+ * The BatchEvent then assigns the waiting resources to the empty agents such that the total approach time plus
+ * a penalty of ResourceMaximumLifeTime + 1 seconds for every resource left unassigned is minimal (see
+ * MinCostAssignment). A resource is only paired with the CANDIDATES_PER_RESOURCE empty agents that can reach it
+ * the earliest, and only with those that can reach it before it expires. The unassigned resources keep waiting
+ * for the next BatchEvent until they expire.
+ *
+ * The candidates of a resource are found by searching the cells of an IntersectionGrid in rings outward from the
+ * pickup location, as EmptyAgentIndex does, with the empty agents grouped by the cell of the end intersection of
+ * their road. The search stops as soon as the lower bound of the approach time from the next ring exceeds the
+ * remaining lifetime of the resource or the approach time of its last candidate, so most agents are never
+ * looked up in the travel time table. The candidates are the same as when every empty agent is checked.
+ */
+public class BatchEvent extends Event {
+
+	// The number of empty agents that are considered for each waiting resource
+	public static final int CANDIDATES_PER_RESOURCE = 16;
+
+	// The cells in which the empty agents are grouped
+	private final IntersectionGrid grid;
+
+	/**
+	 * Constructor for class BatchEvent.
+	 *
+	 * @param time the time of the first batch
+	 * @param simulator the simulator object
+	 */
+	public BatchEvent(long time, Simulator simulator) {
+		super(time, simulator);
+		this.grid = new IntersectionGrid(simulator.map);
+	}
+
+	@Override
+	Event trigger() throws Exception {
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "******** BatchEvent id = " + id + " triggered at time " + time, this);
+		dispatch();
+		time += simulator.batchWindow;
+		return this;
+	}
+
+	/*
+	 * Assign the waiting resources to the empty agents.
+	 */
+	void dispatch() {
+		if (simulator.waitingResources.isEmpty() || simulator.emptyAgents.isEmpty()) {
+			return;
+		}
+
+		ArrayList<ResourceEvent> resources = new ArrayList<>(simulator.waitingResources);
+		ArrayList<AgentEvent> agents = new ArrayList<>(simulator.emptyAgents);
+
+		// The location of each agent at the current time, and the time it needs to reach the end of its road.
+		Road[] agentRoads = new Road[agents.size()];
+		long[] agentOffsets = new long[agents.size()];
+		long[] agentTimesToEnd = new long[agents.size()];
+		for (int i = 0; i < agents.size(); i++) {
+			AgentEvent agent = agents.get(i);
+			agentRoads[i] = agent.roadAt(time);
+			agentTimesToEnd[i] = agent.roadEndTimeAt(time) - time;
+			agentOffsets[i] = agentRoads[i].travelTime - agentTimesToEnd[i];
+		}
+
+		// The agents grouped by the cell of the end intersection of their road, in id order within a cell.
+		int[] cellStart = new int[grid.cellCount() + 1];
+		for (Road road : agentRoads) {
+			cellStart[grid.cellOf(road.to) + 1]++;
+		}
+		for (int cell = 0; cell < grid.cellCount(); cell++) {
+			cellStart[cell + 1] += cellStart[cell];
+		}
+		int[] cellAgents = new int[agents.size()];
+		int[] cellFill = Arrays.copyOf(cellStart, grid.cellCount());
+		for (int a = 0; a < agentRoads.length; a++) {
+			cellAgents[cellFill[grid.cellOf(agentRoads[a].to)]++] = a;
+		}
+
+		// Pair every resource with the agents that can reach it the earliest before it expires, ordered by
+		// approach time and then by id.
+		int[] rowStart = new int[resources.size() + 1];
+		int[] pairAgent = new int[resources.size() * CANDIDATES_PER_RESOURCE];
+		long[] pairCost = new long[resources.size() * CANDIDATES_PER_RESOURCE];
+		int pairs = 0;
+		for (int r = 0; r < resources.size(); r++) {
+			ResourceEvent resource = resources.get(r);
+			Road pickupRoad = resource.pickupLoc.road;
+			long pickupOffset = resource.pickupLoc.travelTimeFromStartIntersection;
+			long remainingLifeTime = resource.expirationTime - time;
+			Intersection target = pickupRoad.from;
+			rowStart[r] = pairs;
+
+			// The agents on the pickup road may reach the pickup location without passing an intersection, so
+			// the cell of the end of the pickup road, which holds them, is searched completely.
+			int pickupRoadCell = grid.cellOf(pickupRoad.to);
+			for (int k = cellStart[pickupRoadCell]; k < cellStart[pickupRoadCell + 1]; k++) {
+				int a = cellAgents[k];
+				long approachTime = simulator.map.travelTimeBetween(agentRoads[a], agentOffsets[a], pickupRoad, pickupOffset);
+				if (approachTime <= remainingLifeTime) {
+					pairs = addCandidate(pairAgent, pairCost, rowStart[r], pairs, a, approachTime);
+				}
+			}
+
+			// Any other agent reaches the pickup location through the end of its road and the start of the
+			// pickup road.
+			int targetCell = grid.cellOf(target);
+			for (int ring = 0; ring <= grid.maxRing(); ring++) {
+				if (grid.ringLowerBound(ring) + pickupOffset > maxApproachTime(pairCost, rowStart[r], pairs, remainingLifeTime)) {
+					break;
+				}
+				for (int i = 0; i < grid.ringSize(ring); i++) {
+					int cell = grid.cellInRing(targetCell, ring, i);
+					if (cell < 0 || cell == pickupRoadCell || cellStart[cell] == cellStart[cell + 1]) {
+						continue;
+					}
+					long cellLowerBound = grid.cellLowerBound(target, cell) + pickupOffset;
+					for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+						int a = cellAgents[k];
+						if (cellLowerBound + agentTimesToEnd[a] > maxApproachTime(pairCost, rowStart[r], pairs, remainingLifeTime)) {
+							continue;
+						}
+						long approachTime = simulator.map.travelTimeBetween(agentRoads[a], agentOffsets[a], pickupRoad, pickupOffset);
+						if (approachTime <= remainingLifeTime) {
+							pairs = addCandidate(pairAgent, pairCost, rowStart[r], pairs, a, approachTime);
+						}
+					}
+				}
+			}
+		}
+		rowStart[resources.size()] = pairs;
+
+		long startTime = System.nanoTime();
+		int[] agentOfResource = new MinCostAssignment(resources.size(), agents.size(), rowStart, pairAgent, pairCost, simulator.ResourceMaximumLifeTime + 1).solve();
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Batch of " + resources.size() + " resources, " + agents.size() + " agents and " + pairs + " pairs solved in " + (System.nanoTime() - startTime) / 1000 + " microseconds.", this);
+
+		for (int r = 0; r < resources.size(); r++) {
+			if (agentOfResource[r] < 0) {
+				continue;
+			}
+			ResourceEvent resource = resources.get(r);
+			simulator.waitingResources.remove(resource);
+			simulator.matcher.onResourceAssigned(resource);
+			simulator.expirations.remove(resource); // resource is picked up and does not expire anymore.
+			simulator.events.add(resource.assignTo(agents.get(agentOfResource[r]), time));
+		}
+	}
+
+	/*
+	 * The largest approach time with which an agent may still become a candidate of a resource: the remaining
+	 * lifetime of the resource, or the approach time of its last candidate once it has all its candidates. An
+	 * agent with the same approach time as the last candidate may still replace it if its id is smaller.
+	 */
+	private static long maxApproachTime(long[] pairCost, int rowStart, int pairs, long remainingLifeTime) {
+		if (pairs - rowStart < CANDIDATES_PER_RESOURCE) {
+			return remainingLifeTime;
+		}
+		return Math.min(remainingLifeTime, pairCost[pairs - 1]);
+	}
+
+	/*
+	 * Insert an agent into the candidates of a resource, which start at rowStart and are sorted by approach time
+	 * and then by agent. If the resource has all its candidates, the last one is dropped, unless the agent goes
+	 * after it. Returns the new number of pairs.
+	 */
+	private static int addCandidate(int[] pairAgent, long[] pairCost, int rowStart, int pairs, int agent, long approachTime) {
+		int i;
+		if (pairs - rowStart < CANDIDATES_PER_RESOURCE) {
+			i = pairs++;
+		} else if (approachTime < pairCost[pairs - 1] || (approachTime == pairCost[pairs - 1] && agent < pairAgent[pairs - 1])) {
+			i = pairs - 1;
+		} else {
+			return pairs;
+		}
+		while (i > rowStart && (pairCost[i - 1] > approachTime || (pairCost[i - 1] == approachTime && pairAgent[i - 1] > agent))) {
+			pairCost[i] = pairCost[i - 1];
+			pairAgent[i] = pairAgent[i - 1];
+			i--;
+		}
+		pairCost[i] = approachTime;
+		pairAgent[i] = agent;
+		return pairs;
+	}
+}
@@ -3,15 +3,12 @@ package COMSETsystem;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
-import java.util.TreeMap;
 
-import com.google.common.collect.ImmutableList;
 import net.iakovlev.timeshape.TimeZoneEngine;
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -20,7 +17,6 @@ import org.apache.log4j.Logger;
 import DataParsing.GeoProjector;
 import DataParsing.KdTree;
 
-import java.util.PriorityQueue;
 import java.awt.geom.Point2D;
 import java.time.ZoneId;
 
@@ -29,6 +25,8 @@ import java.time.ZoneId;
  * The CityMap represents the map of a city.
  * The map is represented as a directed graph of intersections connected by roads.
  * (See Intersection and Road class for more details).
+ * Once created, the graph cannot be changed, so the same CityMap is shared by the
+ * simulator and all agents.
  */
 public class CityMap {
 
@@ -38,44 +36,150 @@ public class CityMap {
 	// A list of roads
 	private List<Road> roads;
 
+	// The roads by their index (see Road.getIndex)
+	private Road[] roadsByIndex;
+
 	// A projector to convert between lat,lon coordinates and xy coordinates.
 	private GeoProjector projector;
 
 	// kdTree for map matching
 	private KdTree kdTree;
 
-	// Shortest travel-time path table.
-	private ImmutableList<ImmutableList<PathTableEntry>> immutablePathTable;
+	// The time zone ID of the map, or null until it is computed
+	private ZoneId zoneId;
+
+	// The travel time in the travel time table between intersections that are not connected. It is small enough
+	// that adding the travel time of a road does not overflow an int.
+	static final int UNREACHABLE_TRAVEL_TIME = Integer.MAX_VALUE / 2;
+
+	// The shortest travel times of the path table in a flat array: the travel time from the intersection with
+	// pathTableIndex i to the intersection with pathTableIndex j is at i * intersections.size() + j.
+	private int[] travelTimeTable;
+
+	// The predecessors on the shortest paths in a flat array: the intersection before the intersection with
+	// pathTableIndex j on the shortest path from the intersection with pathTableIndex i is at
+	// i * intersections.size() + j, or -1 if there is no path.
+	private int[] predecessorTable;
 	
-	// A map from an intersection's path table index to the intersection itself.
-	private HashMap<Integer, Intersection> intersectionsByPathTableIndex;
+	// The intersections by their path table index.
+	private Intersection[] intersectionsByPathTableIndex;
+
+	// The roads of the intersections in compressed sparse row form, indexed by pathTableIndex. The outgoing
+	// roads of the intersection with pathTableIndex i are at outgoingStart[i] <= k < outgoingStart[i + 1] in
+	// the order of Intersection.roadsMapFrom: the road has index outgoingRoad[k], ends at the intersection with
+	// pathTableIndex outgoingTo[k], and takes outgoingTravelTime[k]. The incoming roads are stored the same way,
+	// with the start intersection of each road in incomingFrom.
+	final int[] outgoingStart;
+	final int[] outgoingRoad;
+	final int[] outgoingTo;
+	final long[] outgoingTravelTime;
+	final int[] incomingStart;
+	final int[] incomingRoad;
+	final int[] incomingFrom;
+	final long[] incomingTravelTime;
+
+	// The positions k of the roads of each row of outgoingRoad and incomingRoad in road id order, which is the
+	// order of Intersection.getRoadsFrom and Intersection.getRoadsTo
+	final int[] outgoingById;
+	final int[] incomingById;
 
 	/*
 	 * Constructor of CityMap
 	 */
 	public CityMap(Map<Long, Intersection> intersections, List<Road> roads, 
 			GeoProjector projector, KdTree kdTree) {
-		this.intersections = intersections;
+		this(intersections, roads, projector, kdTree, null);
+	}
+
+	/*
+	 * Constructor of CityMap with a known time zone ID, e.g., when the map is loaded from a compiled map file.
+	 */
+	public CityMap(Map<Long, Intersection> intersections, List<Road> roads, 
+			GeoProjector projector, KdTree kdTree, ZoneId zoneId) {
+		this.zoneId = zoneId;
+		this.intersections = Collections.unmodifiableMap(intersections);
 		this.projector = projector;
 		this.kdTree = kdTree;
-		this.roads = roads;
+		this.roads = Collections.unmodifiableList(roads);
 
 		// setup pathTableIndex for every intersection
-		intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
+		intersectionsByPathTableIndex = new Intersection[intersections.size()];
 		int index = 0;
 		for (Intersection intersection : intersections.values()) {
 			intersection.pathTableIndex = index++;
-			intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
+			intersectionsByPathTableIndex[intersection.pathTableIndex] = intersection;
+		}
+
+		// setup the index of every road
+		roadsByIndex = roads.toArray(new Road[0]);
+		for (int i = 0; i < roadsByIndex.length; i++) {
+			roadsByIndex[i].index = i;
+		}
+
+		// setup the compressed sparse rows of the outgoing and incoming roads
+		outgoingStart = new int[intersectionsByPathTableIndex.length + 1];
+		outgoingRoad = new int[roadsByIndex.length];
+		outgoingTo = new int[roadsByIndex.length];
+		outgoingTravelTime = new long[roadsByIndex.length];
+		incomingStart = new int[intersectionsByPathTableIndex.length + 1];
+		incomingRoad = new int[roadsByIndex.length];
+		incomingFrom = new int[roadsByIndex.length];
+		incomingTravelTime = new long[roadsByIndex.length];
+		int outgoing = 0;
+		int incoming = 0;
+		for (Intersection intersection : intersectionsByPathTableIndex) {
+			outgoingStart[intersection.pathTableIndex] = outgoing;
+			for (Road road : intersection.roadsMapFrom.values()) {
+				outgoingRoad[outgoing] = road.index;
+				outgoingTo[outgoing] = road.to.pathTableIndex;
+				outgoingTravelTime[outgoing] = road.travelTime;
+				outgoing++;
+			}
+			incomingStart[intersection.pathTableIndex] = incoming;
+			for (Road road : intersection.roadsMapTo.values()) {
+				incomingRoad[incoming] = road.index;
+				incomingFrom[incoming] = road.from.pathTableIndex;
+				incomingTravelTime[incoming] = road.travelTime;
+				incoming++;
+			}
 		}
+		outgoingStart[intersectionsByPathTableIndex.length] = outgoing;
+		incomingStart[intersectionsByPathTableIndex.length] = incoming;
+		outgoingById = rowsById(outgoingStart, outgoingRoad);
+		incomingById = rowsById(incomingStart, incomingRoad);
 
+		// seal the graph, so that neither the simulator nor the agents, which share the map, can change it,
+		// and let the intersections read their roads from the compressed sparse rows
+		for (Intersection intersection : intersections.values()) {
+			intersection.seal(this);
+		}
+		for (Road road : roads) {
+			for (Link link : road.links) {
+				link.from.sealed = true;
+				link.to.sealed = true;
+			}
+		}
 	}
 
-	
-	/**
-	 * Create an empty CityMap object for making a copy.
-	 * See makeCopy().
+	/*
+	 * Sort the positions of each row of compressed sparse rows by the id of their road. The rows are short, so
+	 * each is sorted by insertion.
 	 */
-	public CityMap() {}
+	private int[] rowsById(int[] start, int[] roadIndex) {
+		int[] positions = new int[roadIndex.length];
+		for (int row = 0; row + 1 < start.length; row++) {
+			for (int k = start[row]; k < start[row + 1]; k++) {
+				long id = roadsByIndex[roadIndex[k]].id;
+				int i = k;
+				while (i > start[row] && roadsByIndex[roadIndex[positions[i - 1]]].id > id) {
+					positions[i] = positions[i - 1];
+					i--;
+				}
+				positions[i] = k;
+			}
+		}
+		return positions;
+	}
 
 	/**
 	 * Gets the time it takes to move from one intersection to the next
@@ -86,7 +190,18 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (Intersection source, Intersection destination) {
-		return immutablePathTable.get(source.pathTableIndex).get(destination.pathTableIndex).travelTime;
+		return travelTimeTable[source.pathTableIndex * intersections.size() + destination.pathTableIndex];
+	}
+
+	/**
+	 * Gets the flat array of all shortest travel times, such that the travel time from the intersection with
+	 * pathTableIndex i to the intersection with pathTableIndex j is at i * intersections().size() + j. This is
+	 * meant for loops over many travel times; it must not be modified. 
+	 *
+	 * @return the travel time table
+	 */
+	int[] travelTimeTable() {
+		return travelTimeTable;
 	}
 
 
@@ -99,19 +214,34 @@ public class CityMap {
 	 * @return the time in seconds it takes to go from source to destination
 	 */
 	public long travelTimeBetween (LocationOnRoad source, LocationOnRoad destination) {
+		return travelTimeBetween(source.road, source.travelTimeFromStartIntersection, destination.road, destination.travelTimeFromStartIntersection);
+	}        
+
+	/**
+	 * Gets the time it takes to move from a location on a first road to a location on a second road, where
+	 * each location is given by its road and its travel time from the start intersection of the road. This is
+	 * the same as travelTimeBetween(LocationOnRoad, LocationOnRoad) without the need to create LocationOnRoad
+	 * objects, e.g. for every candidate of a search.
+	 *
+	 * @param roadFrom The road to depart from
+	 * @param offsetFrom The travel time from the start intersection of roadFrom to the location to depart from
+	 * @param roadTo The road to arrive at
+	 * @param offsetTo The travel time from the start intersection of roadTo to the location to arrive at
+	 * @return the time in seconds it takes to go from the first location to the second location
+	 */
+	public long travelTimeBetween (Road roadFrom, long offsetFrom, Road roadTo, long offsetTo) {
 		long travelTime = -1;
-		if (source.road == destination.road && source.travelTimeFromStartIntersection <= destination.travelTimeFromStartIntersection) { 
-			// If the two locations are on the same road and source is closer to the start intersection than destination, 
-			// then the travel time is the difference of travelTimeFromStartIntersection between source and destination.
-			travelTime = destination.travelTimeFromStartIntersection - source.travelTimeFromStartIntersection;
+		if (roadFrom == roadTo && offsetFrom <= offsetTo) { 
+			// If the two locations are on the same road and the first location is closer to the start intersection than
+			// the second, then the travel time is the difference of the travel times from the start intersection.
+			travelTime = offsetTo - offsetFrom;
 		} else {
-			long travelTimeToEndIntersectionOfSource = source.road.travelTime - source.travelTimeFromStartIntersection;
-			long travelTimeFromStartIntersectionOfDestination = destination.travelTimeFromStartIntersection;
-			long travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination = travelTimeBetween(source.road.to, destination.road.from);
-			travelTime = travelTimeToEndIntersectionOfSource + travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination + travelTimeFromStartIntersectionOfDestination;
+			long travelTimeToEndIntersectionOfSource = roadFrom.travelTime - offsetFrom;
+			long travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination = travelTimeBetween(roadFrom.to, roadTo.from);
+			travelTime = travelTimeToEndIntersectionOfSource + travelTimeFromEndIntersectionOfSourceToStartIntersectionOfDestination + offsetTo;
 		}
 		return travelTime;
-	}        
+	}
 
 	/**
 	 * @return { @code projector }
@@ -136,77 +266,118 @@ public class CityMap {
 
 	/**
 	 * Compute all-pair shortest travel times. This is done by computing one-to-all shortest travel times
-	 * from each intersection using Dijkstra.
+	 * from each intersection using Dijkstra on the outgoing roads in compressed sparse row form. Among the
+	 * intersections with the same travel time, the one with the smallest id is settled first, and the
+	 * predecessor of an intersection only changes when a strictly shorter path is found.
 	 */
 	public void calcTravelTimes() {
-		ArrayList<ArrayList<PathTableEntry>> pathTable;
-
-		// initialize path table
-		pathTable = new ArrayList<ArrayList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aList = new ArrayList<PathTableEntry>();
-			for (int j = 0; j < intersections.size(); j++) {
-				aList.add(null);
-			}
-			pathTable.add(aList);
-		}
-
-		// creates a queue entry for each intersection
-		HashMap<Intersection, DijkstraQueueEntry> queueEntry = new HashMap<>();
-		for (Intersection i : intersections.values()) {
-			queueEntry.put(i, new DijkstraQueueEntry(i));
+		int size = intersectionsByPathTableIndex.length;
+		if ((long) size * size > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Too many intersections for the travel time table: " + size);
 		}
-
-		for (Intersection source : intersections.values()) {
-			// 'reset' every queue entry
-			for (DijkstraQueueEntry entry : queueEntry.values()) {
-				entry.cost = Long.MAX_VALUE;
-				entry.inQueue = true;
-			}
+		travelTimeTable = new int[size * size];
+		predecessorTable = new int[size * size];
+
+		// The tentative travel time and predecessor of each intersection, valid if reachedIn equals the
+		// pathTableIndex of the source, and whether it is settled, if settledIn equals it.
+		long[] cost = new long[size];
+		int[] predecessor = new int[size];
+		int[] reachedIn = new int[size];
+		int[] settledIn = new int[size];
+		Arrays.fill(reachedIn, -1);
+		Arrays.fill(settledIn, -1);
+
+		// A binary heap of intersections ordered by tentative travel time and pathTableIndex. An intersection
+		// may occur more than once; the occurrences with an outdated travel time are skipped.
+		long[] heapCost = new long[Math.max(1, roadsByIndex.length + 1)];
+		int[] heapIntersection = new int[heapCost.length];
+
+		for (int source = 0; source < size; source++) {
+			int row = source * size;
+			Arrays.fill(travelTimeTable, row, row + size, UNREACHABLE_TRAVEL_TIME);
+			Arrays.fill(predecessorTable, row, row + size, -1);
 
 			// source is set at distance 0
-			DijkstraQueueEntry sourceEntry = queueEntry.get(source);
-			sourceEntry.cost = 0;
-			pathTable.get(source.pathTableIndex).set(source.pathTableIndex, new PathTableEntry(0L, source.pathTableIndex));
-
-			PriorityQueue<DijkstraQueueEntry> queue = new PriorityQueue<>(queueEntry.values());
-
-			while (!queue.isEmpty()) {
-				DijkstraQueueEntry entry = queue.poll();
-				entry.inQueue = false;
-
-				for (Road r : entry.intersection.getRoadsFrom()) {
-					DijkstraQueueEntry v = queueEntry.get(r.to);
-					if (!v.inQueue) continue;
-					long ncost = entry.cost + r.travelTime;
-					if (v.cost > ncost) {
-						queue.remove(v);
-						v.cost = ncost;
-						pathTable.get(source.pathTableIndex).set(v.intersection.pathTableIndex, new PathTableEntry(v.cost, entry.intersection.pathTableIndex));
-						queue.add(v);
+			reachedIn[source] = source;
+			cost[source] = 0;
+			predecessor[source] = source;
+			heapCost[0] = 0;
+			heapIntersection[0] = source;
+			int heapSize = 1;
+
+			while (heapSize > 0) {
+				long settledCost = heapCost[0];
+				int settled = heapIntersection[0];
+				heapSize = siftDown(heapCost, heapIntersection, heapSize - 1, heapCost[heapSize - 1], heapIntersection[heapSize - 1]);
+				if (settledIn[settled] == source) {
+					continue;
+				}
+				settledIn[settled] = source;
+				if (settledCost >= UNREACHABLE_TRAVEL_TIME) {
+					throw new IllegalStateException("Travel time too large for the travel time table: " + settledCost);
+				}
+				travelTimeTable[row + settled] = (int) settledCost;
+				predecessorTable[row + settled] = predecessor[settled];
+
+				for (int k = outgoingStart[settled]; k < outgoingStart[settled + 1]; k++) {
+					int v = outgoingTo[k];
+					if (settledIn[v] == source) continue;
+					long ncost = settledCost + outgoingTravelTime[k];
+					if (reachedIn[v] != source || cost[v] > ncost) {
+						reachedIn[v] = source;
+						cost[v] = ncost;
+						predecessor[v] = settled;
+						if (heapSize == heapCost.length) {
+							heapCost = Arrays.copyOf(heapCost, 2 * heapSize);
+							heapIntersection = Arrays.copyOf(heapIntersection, 2 * heapSize);
+						}
+						siftUp(heapCost, heapIntersection, heapSize++, ncost, v);
 					}
 				}
 			}
 		}
-
-		// Make the path table unmodifiable
-		makePathTableUnmodifiable(pathTable);
 	}
 
-	/**
-	 * Make a path table unmodifiable.
-	 * @param pathTable
+	/*
+	 * Put an intersection with a travel time at position i of a heap, or above it.
 	 */
-	public void makePathTableUnmodifiable(ArrayList<ArrayList<PathTableEntry>> pathTable) {
-		ArrayList<ImmutableList<PathTableEntry>> aListOfImmutableList = new ArrayList<ImmutableList<PathTableEntry>>();
-		for (int i = 0; i < intersections.size(); i++) {
-			ArrayList<PathTableEntry> aListOfPathTableEntries = pathTable.get(i);
-			aListOfImmutableList.add(ImmutableList.copyOf(aListOfPathTableEntries));
-			aListOfPathTableEntries.clear();
+	private static void siftUp(long[] heapCost, int[] heapIntersection, int i, long cost, int intersection) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (heapCost[parent] < cost || (heapCost[parent] == cost && heapIntersection[parent] < intersection)) {
+				break;
+			}
+			heapCost[i] = heapCost[parent];
+			heapIntersection[i] = heapIntersection[parent];
+			i = parent;
 		}
-		pathTable.clear();
+		heapCost[i] = cost;
+		heapIntersection[i] = intersection;
+	}
 
-		immutablePathTable = ImmutableList.copyOf(aListOfImmutableList);
+	/*
+	 * Replace the top of a heap of heapSize intersections by an intersection with a travel time, and put it
+	 * at its place.
+	 *
+	 * @return heapSize
+	 */
+	private static int siftDown(long[] heapCost, int[] heapIntersection, int heapSize, long cost, int intersection) {
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && (heapCost[child + 1] < heapCost[child] || (heapCost[child + 1] == heapCost[child] && heapIntersection[child + 1] < heapIntersection[child]))) {
+				child++;
+			}
+			if (cost < heapCost[child] || (cost == heapCost[child] && intersection < heapIntersection[child])) {
+				break;
+			}
+			heapCost[i] = heapCost[child];
+			heapIntersection[i] = heapIntersection[child];
+			i = child;
+		}
+		heapCost[i] = cost;
+		heapIntersection[i] = intersection;
+		return heapSize;
 	}
 
 	/**
@@ -218,55 +389,58 @@ public class CityMap {
 	public LinkedList<Intersection> shortestTravelTimePath(Intersection source, Intersection destination) {
 		LinkedList<Intersection> path = new LinkedList<Intersection>();
 		path.addFirst(destination);
+		int row = source.pathTableIndex * intersectionsByPathTableIndex.length;
 		int current = destination.pathTableIndex;
 		while (current != source.pathTableIndex) {
-			int pred = immutablePathTable.get(source.pathTableIndex).get(current).predecessor;
-			path.addFirst(intersectionsByPathTableIndex.get(pred));
+			int pred = predecessorTable[row + current];
+			path.addFirst(intersectionsByPathTableIndex[pred]);
 			current = pred;
 		}
 		return path;
 	}
 
-	private class DijkstraQueueEntry implements Comparable<DijkstraQueueEntry> {
-		Intersection intersection;
-		long cost = Long.MAX_VALUE;
-		boolean inQueue = true;
-
-		DijkstraQueueEntry(Intersection intersection) {
-			this.intersection = intersection;
-		}
+	/**
+	 * @return { @code roads }
+	 */
+	public List<Road> roads() {
+		return roads;
+	}
 
-		@Override
-		public int compareTo(DijkstraQueueEntry j) {
-			if (this.cost < j.cost) {
-				return -1;
-			} else if (this.cost > j.cost) {
-				return 1;
-			} else if (this.intersection.id < j.intersection.id) {
-				return -1;
-			} else if (this.intersection.id > j.intersection.id) {
-				return 1;
-			} else {
-				return 0;
-			}
-		}
+	/**
+	 * Gets the road with an index, which is its position in roads(). Together with roadCount(), this
+	 * lets an agent, e.g., pick a random road without creating an array of all roads.
+	 *
+	 * @param index the index of the road (see Road.getIndex), from 0 to roadCount() - 1
+	 * @return the road
+	 */
+	public Road roadAt(int index) {
+		return roadsByIndex[index];
 	}
 
-	private class PathTableEntry {
-		final long travelTime;
-		final int predecessor;
+	/**
+	 * @return the number of roads of the map
+	 */
+	public int roadCount() {
+		return roadsByIndex.length;
+	}
 
-		PathTableEntry(long travelTime, int predecessor) {
-			this.travelTime = travelTime;
-			this.predecessor = predecessor;
-		}
+	/**
+	 * Gets the intersection with an index, which is its pathTableIndex and its position in
+	 * intersections().values(). Together with intersectionCount(), this lets an agent, e.g., pick a random
+	 * intersection without creating an array of all intersections.
+	 *
+	 * @param index the index of the intersection, from 0 to intersectionCount() - 1
+	 * @return the intersection
+	 */
+	public Intersection intersectionAt(int index) {
+		return intersectionsByPathTableIndex[index];
 	}
 
 	/**
-	 * @return { @code roads }
+	 * @return the number of intersections of the map
 	 */
-	public List<Road> roads() {
-		return roads;
+	public int intersectionCount() {
+		return intersectionsByPathTableIndex.length;
 	}
 
 	/**
@@ -277,95 +451,28 @@ public class CityMap {
 	}
 
 	/**
-	 * 
-	 * @return a deep copy of the map
+	 * Set the time zone ID of the map, e.g., when it is given in the configuration, so that
+	 * it is not computed. Only the simulator sets it, before any agent sees the map.
+	 * @param zoneId the time zone ID of the map
 	 */
-	public CityMap makeCopy() {
-		// deeply copy intersections
-		Map<Long, Vertex> verticesCopy = new TreeMap<Long, Vertex>();
-		Map<Long, Intersection> intersectionsCopy = new TreeMap<Long, Intersection>();
-		for (Intersection intersection : intersections.values()) {
-			for (Road road : intersection.roadsMapFrom.values()) {
-				ArrayList<Link> linksCopy = new ArrayList<Link>();
-				for (Link link : road.links) {
-					// create start vertex if not existing yet
-					if (!verticesCopy.containsKey(link.from.id)) {
-						// create a new vertex
-						Vertex vertexFrom = new Vertex(link.from); 
-						verticesCopy.put(vertexFrom.id, vertexFrom);
-					}				
-					// create end vertex if not existing yet
-					if (!verticesCopy.containsKey(link.to.id)) {
-						// create a new vertex
-						Vertex vertexTo = new Vertex(link.to);
-						verticesCopy.put(vertexTo.id, vertexTo);
-					}
-					// create a link
-					Vertex vertexFrom = verticesCopy.get(link.from.id);
-					Vertex vertexTo = verticesCopy.get(link.to.id);
-					Link linkCopy = new Link(link, vertexFrom, vertexTo);
-					vertexFrom.linksMapFrom.put(vertexTo, linkCopy);
-					vertexTo.linksMapTo.put(vertexFrom, linkCopy);
-					linksCopy.add(linkCopy);
-				}
-				Link firstLink = linksCopy.get(0);
-
-				// create start intersection if not existing yet
-				if (!intersectionsCopy.containsKey(road.from.id)) {
-					// create a new intersection
-					Intersection intersectionFrom = new Intersection(road.from);
-					intersectionFrom.vertex = firstLink.from;
-					firstLink.from.intersection = intersectionFrom;
-					intersectionsCopy.put(intersectionFrom.id, intersectionFrom);
-				}
-				Link lastLink = linksCopy.get(linksCopy.size()-1);
-				// create end intersection if not existing yet
-				if (!intersectionsCopy.containsKey(road.to.id)) {
-					// create a new intersection
-					Intersection intersectionTo = new Intersection(road.to);
-					intersectionTo.vertex = lastLink.to;
-					lastLink.to.intersection = intersectionTo;
-					intersectionsCopy.put(intersectionTo.id,  intersectionTo);
-				}
-				// create a road
-				Intersection intersectionFrom = intersectionsCopy.get(road.from.id);
-				Intersection intersectionTo = intersectionsCopy.get(road.to.id);
-				Road roadCopy = new Road(road, intersectionFrom, intersectionTo, linksCopy);
-				intersectionFrom.roadsMapFrom.put(intersectionTo,  roadCopy);
-				intersectionTo.roadsMapTo.put(intersectionFrom, roadCopy);
-			}
-		}
-
-		// now create road list
-		List<Road> roadsCopy = new ArrayList<>();
-		for (Intersection inter : intersectionsCopy.values()) {
-			for (Road road : inter.getRoadsFrom()) {
-				roadsCopy.add(road);
-			}
-		}
-
-		CityMap cityMap = new CityMap();
-		cityMap.intersections = intersectionsCopy;
-		cityMap.roads = roadsCopy;
-		cityMap.immutablePathTable = immutablePathTable;
-		cityMap.projector = projector;
-		cityMap.kdTree = kdTree;
-		
-		cityMap.intersectionsByPathTableIndex = new HashMap<Integer, Intersection>();
-		for (Intersection intersection : cityMap.intersections.values()) {
-			cityMap.intersectionsByPathTableIndex.put(intersection.pathTableIndex, intersection);
-		}
-		
-		return cityMap;
+	void setZoneId(ZoneId zoneId) {
+		this.zoneId = zoneId;
 	}
-	
+
 	/**
 	 * Compute the time zone ID of the map based on an arbitrary location of the map.
 	 * It is assumed that the entire map falls into a single time zone. In other words,
-	 * the map should not cross more than one time zones.
+	 * the map should not cross more than one time zones. The time zone ID is computed once
+	 * and then kept with the map, unless it is set or the map is loaded from a compiled map.
+	 * Computing it loads the time zones of the whole world, which takes seconds and hundreds
+	 * of MB; the time zone engine cannot be limited to the area of the map, as it only loads
+	 * the time zones that lie completely inside the given area.
 	 * @return the time zone ID of the map
 	 */
 	public ZoneId computeZoneId() {
+		if (zoneId != null) {
+			return zoneId;
+		}
 		// get an arbitrary location of the map
 		Intersection intersection = intersections.values().toArray(new Intersection[intersections.size()])[0];
 		// get the time zone id
@@ -373,7 +480,8 @@ public class CityMap {
 		TimeZoneEngine engine = TimeZoneEngine.initialize();
 		Optional<ZoneId> zoneId = engine.query(intersection.latitude, intersection.longitude);
 
-		return zoneId.get();
+		this.zoneId = zoneId.get();
+		return this.zoneId;
 	}
 
 }
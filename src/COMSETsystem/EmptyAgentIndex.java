@@ -0,0 +1,183 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * The EmptyAgentIndex class is a spatial index of the empty agents that is used to find the empty agent that can
+ * reach a resource the earliest without computing the travel time from every empty agent.
+ *
+ * Every empty agent is kept in a bucket of the end intersection of the road it is on. The travel time from an
+ * agent to a pickup location is the time the agent needs to reach that end intersection, plus the travel time
+ * from there to the start intersection of the pickup road, plus the travel time along the pickup road. Within a
+ * bucket the agents are therefore ordered by the arrival time at the end intersection (and by id to break ties),
+ * and only the first agent of a bucket can be the best one. The only exception are the agents on the pickup road
+ * itself, which may reach the pickup location without passing any intersection; their bucket is always scanned
+ * completely.
+ *
+ * The buckets are grouped into the cells of an IntersectionGrid, which are searched in rings outward from the
+ * pickup location until the lower bound of the travel time from the next ring exceeds the best travel time found
+ * so far. The result is the same agent as the one found by checking every empty agent in id order.
+ *
+ * Agents that follow a committed route (see BaseAgent.nextRoute) move from road to road without events. Their
+ * buckets are brought up to date lazily, right before a search.
+ */
+public class EmptyAgentIndex {
+
+	// Orders agents by the time at which they reach the end intersection of their road, and then by id.
+	private static final Comparator<AgentEvent> ARRIVAL_ORDER = new Comparator<AgentEvent>() {
+		public int compare(AgentEvent a1, AgentEvent a2) {
+			if (a1.indexedEndTime != a2.indexedEndTime)
+				return a1.indexedEndTime < a2.indexedEndTime ? -1 : 1;
+			else if (a1.id != a2.id)
+				return a1.id < a2.id ? -1 : 1;
+			else
+				return 0;
+		}
+	};
+
+	// The map that the agents are on
+	private final CityMap map;
+
+	// The cells in which the buckets are grouped
+	private final IntersectionGrid grid;
+
+	// The agents indexed by the end intersection of their road, indexed by pathTableIndex
+	private final ArrayList<TreeSet<AgentEvent>> buckets;
+
+	// The number of agents in each cell
+	private final int[] agentsInCell;
+
+	// The indexed agents that follow a committed route, in the order in which they move to their next road
+	private final TreeSet<AgentEvent> routeAgents = new TreeSet<>(ARRIVAL_ORDER);
+
+	/**
+	 * Constructor of EmptyAgentIndex.
+	 *
+	 * @param map the map that the agents are on
+	 * @param grid the cells in which the agents are grouped
+	 */
+	public EmptyAgentIndex(CityMap map, IntersectionGrid grid) {
+		this.map = map;
+		this.grid = grid;
+		buckets = new ArrayList<>();
+		for (int i = 0; i < map.intersections().size(); i++) {
+			buckets.add(new TreeSet<AgentEvent>(ARRIVAL_ORDER));
+		}
+		agentsInCell = new int[grid.cellCount()];
+	}
+
+	/**
+	 * Add an empty agent to the index, or move it to its current road if it is indexed already.
+	 * This must be called whenever an empty agent gets a new event.
+	 *
+	 * @param agent the empty agent
+	 * @param currentTime the current simulation time
+	 */
+	public void update(AgentEvent agent, long currentTime) {
+		remove(agent);
+		Road road = agent.roadAt(currentTime);
+		agent.indexedIntersection = road.to;
+		agent.indexedEndTime = agent.roadEndTimeAt(currentTime);
+		buckets.get(road.to.pathTableIndex).add(agent);
+		agentsInCell[grid.cellOf(road.to)]++;
+		if (agent.routeRoads != null) {
+			routeAgents.add(agent);
+		}
+	}
+
+	/**
+	 * Remove an agent from the index. Nothing happens if the agent is not indexed.
+	 *
+	 * @param agent the agent to remove
+	 */
+	public void remove(AgentEvent agent) {
+		if (agent.indexedIntersection == null) {
+			return;
+		}
+		buckets.get(agent.indexedIntersection.pathTableIndex).remove(agent);
+		agentsInCell[grid.cellOf(agent.indexedIntersection)]--;
+		routeAgents.remove(agent);
+		agent.indexedIntersection = null;
+	}
+
+	/**
+	 * Move the agents on committed routes that have left their indexed road before currentTime. This must be
+	 * called before the buckets are read at currentTime.
+	 *
+	 * @param currentTime the current simulation time
+	 */
+	void catchUp(long currentTime) {
+		while (!routeAgents.isEmpty() && routeAgents.first().indexedEndTime < currentTime) {
+			update(routeAgents.first(), currentTime);
+		}
+	}
+
+	/**
+	 * @param intersection an intersection of the map
+	 * @return the agents whose road ends at the intersection, ordered by arrival time and id
+	 */
+	TreeSet<AgentEvent> agentsAt(Intersection intersection) {
+		return buckets.get(intersection.pathTableIndex);
+	}
+
+	/**
+	 * Find the empty agent that can reach a location the earliest, provided that it can get there within
+	 * a maximum travel time. Ties are broken by the smallest agent id.
+	 *
+	 * @param destination the location to reach
+	 * @param currentTime the current simulation time
+	 * @param maxTravelTime the maximum travel time
+	 * @return the agent, or null if no empty agent can reach the location within maxTravelTime
+	 */
+	public AgentEvent nearest(LocationOnRoad destination, long currentTime, long maxTravelTime) {
+		catchUp(currentTime);
+
+		Intersection target = destination.road.from;
+		AgentEvent bestAgent = null;
+		long bestTravelTime = maxTravelTime;
+
+		// The agents on the destination road may reach it directly, so check all of them.
+		Intersection endOfDestinationRoad = destination.road.to;
+		for (AgentEvent agent : buckets.get(endOfDestinationRoad.pathTableIndex)) {
+			long travelTimeToEndIntersection = agent.indexedEndTime - currentTime;
+			Road road = agent.roadAt(currentTime);
+			long travelTime = map.travelTimeBetween(road, road.travelTime - travelTimeToEndIntersection, destination.road, destination.travelTimeFromStartIntersection);
+			if (travelTime < bestTravelTime || (travelTime == bestTravelTime && (bestAgent == null || agent.id < bestAgent.id))) {
+				bestAgent = agent;
+				bestTravelTime = travelTime;
+			}
+		}
+
+		// Search the other buckets in rings of cells around the destination.
+		int targetCell = grid.cellOf(target);
+		for (int ring = 0; ring <= grid.maxRing(); ring++) {
+			if (grid.ringLowerBound(ring) + destination.travelTimeFromStartIntersection > bestTravelTime) {
+				break;
+			}
+			for (int i = 0; i < grid.ringSize(ring); i++) {
+				int cell = grid.cellInRing(targetCell, ring, i);
+				if (cell < 0 || agentsInCell[cell] == 0) {
+					continue;
+				}
+				if (grid.cellLowerBound(target, cell) + destination.travelTimeFromStartIntersection > bestTravelTime) {
+					continue;
+				}
+				for (Intersection intersection : grid.intersectionsOf(cell)) {
+					TreeSet<AgentEvent> bucket = buckets.get(intersection.pathTableIndex);
+					if (bucket.isEmpty() || intersection == endOfDestinationRoad) {
+						continue;
+					}
+					AgentEvent agent = bucket.first();
+					long travelTime = agent.indexedEndTime - currentTime + map.travelTimeBetween(intersection, target) + destination.travelTimeFromStartIntersection;
+					if (travelTime < bestTravelTime || (travelTime == bestTravelTime && (bestAgent == null || agent.id < bestAgent.id))) {
+						bestAgent = agent;
+						bestTravelTime = travelTime;
+					}
+				}
+			}
+		}
+		return bestAgent;
+	}
+}
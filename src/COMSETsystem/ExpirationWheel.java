@@ -0,0 +1,143 @@
+package COMSETsystem;
+
+/**
+ * The ExpirationWheel class holds the expirations of the waiting resources, apart from the event queue of the
+ * Simulator. A resource that is not assigned when it becomes available is added to the wheel, and it is removed
+ * again when it is assigned before it expires, which takes constant time instead of the linear time of removing
+ * it from the event queue. The Simulator triggers the expiration of a resource when it is the earliest of the
+ * events in the event queue and in the wheel, with ties broken by id as in the event queue.
+ *
+ * The wheel has a slot for every second in a window of at least ResourceMaximumLifeTime + 1 seconds. The resources
+ * that expire in the same slot are kept in a doubly linked list through the resources themselves
+ * (ResourceEvent.previousExpiring and ResourceEvent.nextExpiring), ordered by expiration time and id. Since
+ * a resource is added when it becomes available, all resources in the wheel expire within one window of the
+ * current time, so a slot normally only holds resources with the same expiration time and adding appends to
+ * its list.
+ */
+class ExpirationWheel {
+
+	// The first and the last resource of each slot
+	private final ResourceEvent[] first;
+	private final ResourceEvent[] last;
+
+	// The number of slots minus one; the number of slots is a power of two
+	private final int mask;
+
+	// The number of resources in the wheel
+	private int size = 0;
+
+	// No resource in the wheel expires before this time
+	private long cursor = 0;
+
+	/**
+	 * Constructor of ExpirationWheel.
+	 *
+	 * @param window the maximum life time of a resource in seconds
+	 */
+	ExpirationWheel(long window) {
+		int slots = Integer.highestOneBit((int) Math.max(1, window) * 2);
+		first = new ResourceEvent[slots];
+		last = new ResourceEvent[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * @return the number of resources in the wheel
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Add a resource that expires at its expirationTime.
+	 *
+	 * @param resource the resource, which must not be in the wheel
+	 */
+	void add(ResourceEvent resource) {
+		if (size == 0 || resource.expirationTime < cursor) {
+			cursor = resource.expirationTime;
+		}
+		int slot = (int) (resource.expirationTime & mask);
+		// Find the resource to insert after, which is normally the last one of the slot.
+		ResourceEvent previous = last[slot];
+		while (previous != null && expiresAfter(previous, resource)) {
+			previous = previous.previousExpiring;
+		}
+		ResourceEvent next = previous == null ? first[slot] : previous.nextExpiring;
+		resource.previousExpiring = previous;
+		resource.nextExpiring = next;
+		if (previous == null) {
+			first[slot] = resource;
+		} else {
+			previous.nextExpiring = resource;
+		}
+		if (next == null) {
+			last[slot] = resource;
+		} else {
+			next.previousExpiring = resource;
+		}
+		resource.expiring = true;
+		size++;
+	}
+
+	/**
+	 * Remove a resource from the wheel, e.g., because it is picked up.
+	 *
+	 * @param resource the resource
+	 * @return true if the resource was in the wheel
+	 */
+	boolean remove(ResourceEvent resource) {
+		if (!resource.expiring) {
+			return false;
+		}
+		int slot = (int) (resource.expirationTime & mask);
+		if (resource.previousExpiring == null) {
+			first[slot] = resource.nextExpiring;
+		} else {
+			resource.previousExpiring.nextExpiring = resource.nextExpiring;
+		}
+		if (resource.nextExpiring == null) {
+			last[slot] = resource.previousExpiring;
+		} else {
+			resource.nextExpiring.previousExpiring = resource.previousExpiring;
+		}
+		resource.previousExpiring = null;
+		resource.nextExpiring = null;
+		resource.expiring = false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return the resource that expires first, or null if the wheel is empty
+	 */
+	ResourceEvent peek() {
+		if (size == 0) {
+			return null;
+		}
+		while (true) {
+			ResourceEvent resource = first[(int) (cursor & mask)];
+			if (resource != null && resource.expirationTime == cursor) {
+				return resource;
+			}
+			cursor++;
+		}
+	}
+
+	/**
+	 * Remove the resource that expires first.
+	 *
+	 * @return the resource, or null if the wheel is empty
+	 */
+	ResourceEvent poll() {
+		ResourceEvent resource = peek();
+		if (resource != null) {
+			remove(resource);
+		}
+		return resource;
+	}
+
+	private static boolean expiresAfter(ResourceEvent a, ResourceEvent b) {
+		return a.expirationTime > b.expirationTime || (a.expirationTime == b.expirationTime && a.id > b.id);
+	}
+}
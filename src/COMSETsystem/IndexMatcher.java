@@ -0,0 +1,69 @@
+package COMSETsystem;
+
+/**
+ * The IndexMatcher keeps the empty agents and the waiting resources in spatial indexes (see EmptyAgentIndex
+ * and WaitingResourceIndex), which are searched outward from a resource or an agent.
+ */
+public class IndexMatcher implements Matcher {
+
+	// A reference to the Simulator
+	protected final Simulator simulator;
+
+	// The index of the empty agents
+	protected final EmptyAgentIndex emptyAgentIndex;
+
+	// The index of the waiting resources
+	protected final WaitingResourceIndex waitingResourceIndex;
+
+	/**
+	 * Constructor of IndexMatcher.
+	 * 
+	 * @param simulator the simulator
+	 */
+	public IndexMatcher(Simulator simulator) {
+		this.simulator = simulator;
+		IntersectionGrid grid = new IntersectionGrid(simulator.map);
+		emptyAgentIndex = new EmptyAgentIndex(simulator.map, grid);
+		waitingResourceIndex = new WaitingResourceIndex(simulator.map, grid);
+	}
+
+	@Override
+	public AgentEvent findAgentFor(ResourceEvent resource) {
+		return emptyAgentIndex.nearest(resource.pickupLoc, resource.time, resource.expirationTime - resource.time);
+	}
+
+	@Override
+	public ResourceEvent findResourceFor(AgentEvent agent) {
+		return waitingResourceIndex.nearest(agent.loc, agent.time);
+	}
+
+	@Override
+	public void onAgentEmpty(AgentEvent agent, long currentTime) {
+		emptyAgentIndex.update(agent, currentTime);
+	}
+
+	@Override
+	public void onAgentMove(AgentEvent agent, long currentTime) {
+		emptyAgentIndex.update(agent, currentTime);
+	}
+
+	@Override
+	public void onAgentAssigned(AgentEvent agent) {
+		emptyAgentIndex.remove(agent);
+	}
+
+	@Override
+	public void onResourceWaiting(ResourceEvent resource) {
+		waitingResourceIndex.add(resource);
+	}
+
+	@Override
+	public void onResourceExpired(ResourceEvent resource) {
+		waitingResourceIndex.remove(resource);
+	}
+
+	@Override
+	public void onResourceAssigned(ResourceEvent resource) {
+		waitingResourceIndex.remove(resource);
+	}
+}
@@ -0,0 +1,359 @@
+package COMSETsystem;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.ToIntFunction;
+
+/**
+ * The IndexedEventSet class is the set of empty agents and the set of waiting resources of the Simulator.
+ * Every agent and every resource has a dense index (AgentEvent.index and ResourceEvent.index) that is given
+ * in the order in which the events are created, and thus in id order. The set is a bitset over these indices
+ * plus an array that holds the event of each index, so add, remove and contains take constant time and
+ * iterating visits the events in id order without following any pointers.
+ *
+ * Since the agents and the resources leave the sets roughly in the order in which they enter them, the set
+ * keeps the first word of the bitset that may hold a member, so that iterating does not go over the words
+ * of the events that have left the set long ago.
+ *
+ * The set is sorted by index, i.e., by id, as the TreeSets it replaces were, and its head, tail and sub sets
+ * are views of the ranges of indices between their bounds.
+ *
+ * @param <E> AgentEvent or ResourceEvent
+ */
+class IndexedEventSet<E extends Event> extends AbstractSet<E> implements SortedSet<E> {
+
+	// The type of the events
+	private final Class<E> type;
+
+	// The dense index of an event
+	private final ToIntFunction<E> index;
+
+	// The order of the events by index
+	private final Comparator<E> comparator;
+
+	// The bitset of the indices of the members, and the member of each index
+	private long[] words = new long[1];
+	private Object[] members = new Object[Long.SIZE];
+
+	// The number of members
+	private int size = 0;
+
+	// All words before this one are zero
+	private int firstWord = 0;
+
+	/**
+	 * Constructor of IndexedEventSet.
+	 *
+	 * @param type the type of the events
+	 * @param index the dense index of an event
+	 */
+	IndexedEventSet(Class<E> type, ToIntFunction<E> index) {
+		this.type = type;
+		this.index = index;
+		this.comparator = Comparator.comparingInt(index);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!type.isInstance(o)) {
+			return false;
+		}
+		int i = index.applyAsInt(type.cast(o));
+		return i < members.length && members[i] == o;
+	}
+
+	@Override
+	public boolean add(E e) {
+		int i = index.applyAsInt(e);
+		if (i >= members.length) {
+			members = Arrays.copyOf(members, Math.max(2 * members.length, i + 1));
+			words = Arrays.copyOf(words, (members.length + Long.SIZE - 1) / Long.SIZE);
+		}
+		if (members[i] != null) {
+			return false;
+		}
+		members[i] = e;
+		words[i / Long.SIZE] |= 1L << i;
+		firstWord = Math.min(firstWord, i / Long.SIZE);
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		removeAt(index.applyAsInt(type.cast(o)));
+		return true;
+	}
+
+	private void removeAt(int i) {
+		members[i] = null;
+		words[i / Long.SIZE] &= ~(1L << i);
+		size--;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0L);
+		Arrays.fill(members, null);
+		size = 0;
+		firstWord = 0;
+	}
+
+	/*
+	 * The first member with an index of at least i, or -1 if there is none.
+	 */
+	private int nextMember(int i) {
+		int w = i / Long.SIZE;
+		if (w >= words.length) {
+			return -1;
+		}
+		long word = words[w] & (-1L << i);
+		while (word == 0) {
+			if (++w == words.length) {
+				return -1;
+			}
+			word = words[w];
+		}
+		return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+	}
+
+	/*
+	 * The first member with an index from `from` up to but not including `to`, or -1 if there is none.
+	 */
+	private int firstMember(int from, int to) {
+		if (size == 0) {
+			return -1;
+		}
+		int i = nextMember(Math.max(from, firstWord * Long.SIZE));
+		return i < to ? i : -1;
+	}
+
+	/*
+	 * The last member with an index from `from` up to but not including `to`, or -1 if there is none.
+	 */
+	private int lastMember(int from, int to) {
+		int i = Math.min(to, members.length) - 1;
+		if (size == 0 || i < from) {
+			return -1;
+		}
+		int w = i / Long.SIZE;
+		long word = words[w] & (-1L >>> (Long.SIZE - 1 - i % Long.SIZE));
+		while (word == 0) {
+			if (--w < 0) {
+				return -1;
+			}
+			word = words[w];
+		}
+		int last = w * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(word);
+		return last >= from ? last : -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E member(int i) {
+		if (i < 0) {
+			throw new NoSuchElementException();
+		}
+		return (E) members[i];
+	}
+
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	@Override
+	public E first() {
+		return member(firstMember(0, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public E last() {
+		return member(lastMember(0, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public SortedSet<E> headSet(E toElement) {
+		return new Range(0, index.applyAsInt(toElement));
+	}
+
+	@Override
+	public SortedSet<E> tailSet(E fromElement) {
+		return new Range(index.applyAsInt(fromElement), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public SortedSet<E> subSet(E fromElement, E toElement) {
+		return new Range(0, Integer.MAX_VALUE).subSet(fromElement, toElement);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		while (firstWord < words.length - 1 && words[firstWord] == 0) {
+			firstWord++;
+		}
+		return new Iterator<E>() {
+			// The number of members that are visited
+			private int visited = 0;
+
+			// The index of the next member, and of the member returned last
+			private int next = size > 0 ? nextMember(firstWord * Long.SIZE) : -1;
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				// Stop at the last member rather than at the end of the bitset.
+				next = ++visited < size ? nextMember(next + 1) : -1;
+				return (E) members[last];
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0 || members[last] == null) {
+					throw new IllegalStateException();
+				}
+				removeAt(last);
+				visited--;
+			}
+		};
+	}
+
+	/**
+	 * The members with an index from lo up to but not including hi, as a view of the set.
+	 */
+	private class Range extends AbstractSet<E> implements SortedSet<E> {
+
+		// The bounds of the indices of the members in the range
+		private final int lo, hi;
+
+		Range(int lo, int hi) {
+			if (lo > hi) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		private boolean inRange(int i) {
+			return lo <= i && i < hi;
+		}
+
+		@Override
+		public int size() {
+			int count = 0;
+			for (int i = firstMember(lo, hi); i >= 0 && i < hi; i = nextMember(i + 1)) {
+				count++;
+			}
+			return count;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return IndexedEventSet.this.contains(o) && inRange(index.applyAsInt(type.cast(o)));
+		}
+
+		@Override
+		public boolean add(E e) {
+			if (!inRange(index.applyAsInt(e))) {
+				throw new IllegalArgumentException("element out of range");
+			}
+			return IndexedEventSet.this.add(e);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return contains(o) && IndexedEventSet.this.remove(o);
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				// The index of the next member, and of the member returned last
+				private int next = firstMember(lo, hi);
+				private int last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public E next() {
+					E member = member(next);
+					last = next;
+					next = nextMember(next + 1);
+					if (next >= hi) {
+						next = -1;
+					}
+					return member;
+				}
+
+				@Override
+				public void remove() {
+					if (last < 0 || members[last] == null) {
+						throw new IllegalStateException();
+					}
+					removeAt(last);
+				}
+			};
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public E first() {
+			return member(firstMember(lo, hi));
+		}
+
+		@Override
+		public E last() {
+			return member(lastMember(lo, hi));
+		}
+
+		@Override
+		public SortedSet<E> headSet(E toElement) {
+			return subRange(lo, index.applyAsInt(toElement));
+		}
+
+		@Override
+		public SortedSet<E> tailSet(E fromElement) {
+			return subRange(index.applyAsInt(fromElement), hi);
+		}
+
+		@Override
+		public SortedSet<E> subSet(E fromElement, E toElement) {
+			return subRange(index.applyAsInt(fromElement), index.applyAsInt(toElement));
+		}
+
+		private SortedSet<E> subRange(int from, int to) {
+			if (from < lo || to > hi) {
+				throw new IllegalArgumentException("element out of range");
+			}
+			return new Range(from, to);
+		}
+	}
+}
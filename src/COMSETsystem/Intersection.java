@@ -12,49 +12,67 @@ public class Intersection implements Comparable<Intersection> {
 
 	final public double longitude, latitude;
 	
-	// projected 2D coordinates
-	final public Point2D xy; 
+	// projected 2D coordinates; a Point2D could be changed by an agent, so only copies are handed out (see getXY)
+	private final double x, y; 
 	
 	// a unique id
 	final public long id;
 	
-	// the index used to look up the shortest travel time path table (pathTable) in CityMap
-	public int pathTableIndex; 
+	// the index used to look up the shortest travel time path table (pathTable) in CityMap; set by the CityMap
+	int pathTableIndex; 
 	
 	// the vertex at which the intersection is located
-	public Vertex vertex; 
+	final public Vertex vertex; 
+
+	// The CityMap that the intersection is part of, or null while the map is being created. Once the
+	// intersection is part of a CityMap, no roads can be added to it anymore.
+	CityMap map;
+
+	// The roads that end at this intersection while the map is being created. A road adds itself when
+	// it is created.
+	final TreeMap<Intersection, Road> roadsTo = new TreeMap<>();
+
+	// The roads that start at this intersection while the map is being created. A road adds itself when
+	// it is created.
+	final TreeMap<Intersection, Road> roadsFrom = new TreeMap<>();
 
 	// The roads that end at this intersection, i.e., the roads for which this intersection is
-	// the downstream intersection, also called incoming roads.
-	public Map<Intersection, Road> roadsMapTo = new TreeMap<>();
+	// the downstream intersection, also called incoming roads, by their start intersection.
+	final public Map<Intersection, Road> roadsMapTo = new RoadMap(false);
 
 	// The roads that start at this intersection, i.e., the roads for which this intersection is
-	// the upstream intersection, also called outgoing roads.
-	public Map<Intersection, Road> roadsMapFrom = new TreeMap<>();
+	// the upstream intersection, also called outgoing roads, by their end intersection.
+	final public Map<Intersection, Road> roadsMapFrom = new RoadMap(true);
 
 	/**
-	 * Constructor of Intersection.
+	 * Constructor of Intersection. Promotes the vertex to this intersection.
 	 * @param vertex the vertex at which the intersection is located
 	 */
 	public Intersection (Vertex vertex) {
 		this.longitude = vertex.longitude;
 		this.latitude = vertex.latitude;
 		this.id = vertex.id;
-		this.xy = vertex.xy;
+		this.x = vertex.getX();
+		this.y = vertex.getY();
 		this.vertex =vertex;
+		vertex.intersection = this;
 	}
-	
+
 	/**
-	 * Constructing from an existing intersection
-	 * @param anIntersection
+	 * @return the index used to look up the shortest travel time path table in CityMap (see
+	 * CityMap.intersectionAt)
+	 */
+	public int getPathTableIndex() {
+		return pathTableIndex;
+	}
+	
+	/*
+	 * Make the intersection part of a CityMap, which holds its roads from now on.
 	 */
-	public Intersection(Intersection anIntersection) {
-		this.longitude = anIntersection.longitude;
-		this.latitude = anIntersection.latitude;
-		this.id = anIntersection.id;
-		this.xy = new Point2D.Double(anIntersection.xy.getX(), anIntersection.xy.getY());
-		this.pathTableIndex = anIntersection.pathTableIndex;
-		this.vertex = null;
+	void seal(CityMap map) {
+		this.map = map;
+		roadsFrom.clear();
+		roadsTo.clear();
 	}
 
 	/**
@@ -65,7 +83,7 @@ public class Intersection implements Comparable<Intersection> {
 	 * @return true if there is a road between this and i and false otherwise.
 	 */
 	public boolean isAdjacent (Intersection i) {
-		return (roadsMapFrom.keySet().contains(i) || roadsMapTo.keySet().contains(i));
+		return (roadsMapFrom.containsKey(i) || roadsMapTo.containsKey(i));
 	}
 
 	/**
@@ -77,8 +95,9 @@ public class Intersection implements Comparable<Intersection> {
 	 *          the other
 	 */
 	public Road roadTo (Intersection i) throws IllegalArgumentException {
-		if (roadsMapFrom.keySet().contains(i)) {
-			return roadsMapFrom.get(i);
+		Road road = roadsMapFrom.get(i);
+		if (road != null) {
+			return road;
 		}
 		throw new IllegalArgumentException("no road between " +
 				"this and i");
@@ -86,22 +105,22 @@ public class Intersection implements Comparable<Intersection> {
 
 	/**
 	 * Return a set of all the roads going from this intersection to some
-	 * other intersection
+	 * other intersection, in road id order
 	 * 
 	 * @return a set of roads from this intersection to other intersections 
 	 */
 	public Set<Road> getRoadsFrom () {
-		return new TreeSet<>(roadsMapFrom.values());
+		return ((RoadMap) roadsMapFrom).roadSet();
 	}
 
 	/**
 	 * Return a set of all the roads going from some intersection to this
-	 * intersection
+	 * intersection, in road id order
 	 * 
 	 * @return a set of roads going to this intersection 
 	 */
 	public Set<Road> getRoadsTo () {
-		return new TreeSet<>(roadsMapTo.values());
+		return ((RoadMap) roadsMapTo).roadSet();
 	}
 
 	/**
@@ -142,7 +161,7 @@ public class Intersection implements Comparable<Intersection> {
 	 * @return x-coordinate
 	 */
 	public double getX() {
-		return this.xy.getX();
+		return this.x;
 	}
 
 	/**
@@ -150,7 +169,15 @@ public class Intersection implements Comparable<Intersection> {
 	 * @return y-coordinate
 	 */
 	public double getY() {
-		return this.xy.getY();
+		return this.y;
+	}
+
+	/**
+	 * returns the projected coordinates of this intersection
+	 * @return a new point at the x- and y-coordinate, which can be changed without changing this intersection
+	 */
+	public Point2D getXY() {
+		return new Point2D.Double(x, y);
 	}
 
 	/**
@@ -176,4 +203,145 @@ public class Intersection implements Comparable<Intersection> {
 			return 1;
 	}
 
+	/*
+	 * The outgoing or incoming roads of the intersection by the intersection at their other end. While the
+	 * map is being created, this is a read-only view of roadsFrom or roadsTo. Once the intersection is part
+	 * of a CityMap, it is a read-only view of the compressed sparse rows of the map (see CityMap.outgoingStart),
+	 * which hold the roads in the same order, i.e., by the other intersection. The set of the roads is in road
+	 * id order in both cases (see CityMap.outgoingById).
+	 */
+	private final class RoadMap extends AbstractMap<Intersection, Road> {
+
+		// Whether the roads are the outgoing roads
+		private final boolean outgoing;
+
+		// The entries, and the roads
+		private final Set<Map.Entry<Intersection, Road>> entrySet;
+		private final Set<Road> roadSet;
+
+		RoadMap(boolean outgoing) {
+			this.outgoing = outgoing;
+			this.entrySet = new AbstractSet<Map.Entry<Intersection, Road>>() {
+				@Override
+				public Iterator<Map.Entry<Intersection, Road>> iterator() {
+					if (map == null) {
+						return Collections.unmodifiableMap(creationRoads()).entrySet().iterator();
+					}
+					return new RowIterator<Map.Entry<Intersection, Road>>() {
+						@Override
+						Map.Entry<Intersection, Road> get(int k) {
+							return new AbstractMap.SimpleImmutableEntry<>(neighbor(k), road(k));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return RoadMap.this.size();
+				}
+			};
+			this.roadSet = new AbstractSet<Road>() {
+				@Override
+				public Iterator<Road> iterator() {
+					if (map == null) {
+						return Collections.unmodifiableCollection(creationRoads().values()).iterator();
+					}
+					return new RowIterator<Road>() {
+						@Override
+						Road get(int k) {
+							return road((outgoing ? map.outgoingById : map.incomingById)[k]);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return RoadMap.this.size();
+				}
+			};
+		}
+
+		private TreeMap<Intersection, Road> creationRoads() {
+			return outgoing ? roadsFrom : roadsTo;
+		}
+
+		private int start() {
+			return (outgoing ? map.outgoingStart : map.incomingStart)[pathTableIndex];
+		}
+
+		private int end() {
+			return (outgoing ? map.outgoingStart : map.incomingStart)[pathTableIndex + 1];
+		}
+
+		private Road road(int k) {
+			return map.roadAt((outgoing ? map.outgoingRoad : map.incomingRoad)[k]);
+		}
+
+		private Intersection neighbor(int k) {
+			return map.intersectionAt((outgoing ? map.outgoingTo : map.incomingFrom)[k]);
+		}
+
+		Set<Road> roadSet() {
+			if (map == null) {
+				// The roads in id order, as created.
+				return new TreeSet<>(creationRoads().values());
+			}
+			return roadSet;
+		}
+
+		@Override
+		public Set<Map.Entry<Intersection, Road>> entrySet() {
+			return entrySet;
+		}
+
+		@Override
+		public int size() {
+			return map == null ? creationRoads().size() : end() - start();
+		}
+
+		@Override
+		public Road get(Object key) {
+			if (map == null) {
+				return creationRoads().get(key);
+			}
+			if (!(key instanceof Intersection)) {
+				return null;
+			}
+			long id = ((Intersection) key).id;
+			for (int k = start(); k < end(); k++) {
+				if (neighbor(k).id == id) {
+					return road(k);
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		/*
+		 * An iterator over the row of the roads of the intersection.
+		 */
+		private abstract class RowIterator<E> implements Iterator<E> {
+			private int k = start();
+			private final int end = end();
+
+			abstract E get(int k);
+
+			@Override
+			public boolean hasNext() {
+				return k < end;
+			}
+
+			@Override
+			public E next() {
+				if (k == end) {
+					throw new NoSuchElementException();
+				}
+				return get(k++);
+			}
+		}
+	}
 }
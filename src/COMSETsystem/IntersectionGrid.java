@@ -0,0 +1,211 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+
+/**
+ * The IntersectionGrid class partitions the intersections of a map into square cells of a uniform grid over
+ * the projected xy coordinates. It provides lower bounds of the travel time between an intersection and any
+ * intersection of a cell, so that spatial indexes built on top of it (see EmptyAgentIndex) can search cells
+ * outward from a location and stop as soon as no cell can contain anything closer than what has been found.
+ *
+ * The lower bounds rely on the fact that every link is at least as long as the straight line between its
+ * vertices and cannot be traversed faster than at its speed, so the travel time between two intersections is
+ * never smaller than their Euclidean distance divided by the highest link speed of the map.
+ */
+public class IntersectionGrid {
+
+	// The side length of a cell in meters
+	public static final double CELL_SIZE = 250;
+
+	// The lower-left corner of the grid
+	private final double minX, minY;
+
+	// The number of columns and rows of the grid
+	private final int columns, rows;
+
+	// The highest travel speed of any link of the map in meters per second
+	private final double maxSpeed;
+
+	// The cell of each intersection, indexed by pathTableIndex
+	private final int[] cellOfIntersection;
+
+	// The intersections of each cell
+	private final Intersection[][] intersectionsOfCell;
+
+	/**
+	 * Constructor of IntersectionGrid.
+	 *
+	 * @param map the map whose intersections are partitioned
+	 */
+	public IntersectionGrid(CityMap map) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (Intersection intersection : map.intersections().values()) {
+			minX = Math.min(minX, intersection.getX());
+			minY = Math.min(minY, intersection.getY());
+			maxX = Math.max(maxX, intersection.getX());
+			maxY = Math.max(maxY, intersection.getY());
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.columns = (int) ((maxX - minX) / CELL_SIZE) + 1;
+		this.rows = (int) ((maxY - minY) / CELL_SIZE) + 1;
+
+		double maxSpeed = 0;
+		for (Road road : map.roads()) {
+			for (Link link : road.links) {
+				maxSpeed = Math.max(maxSpeed, link.speed);
+			}
+		}
+		this.maxSpeed = maxSpeed;
+
+		ArrayList<ArrayList<Intersection>> cells = new ArrayList<>();
+		for (int i = 0; i < columns * rows; i++) {
+			cells.add(new ArrayList<Intersection>());
+		}
+		cellOfIntersection = new int[map.intersections().size()];
+		for (Intersection intersection : map.intersections().values()) {
+			int cell = column(intersection.getX()) + row(intersection.getY()) * columns;
+			cellOfIntersection[intersection.pathTableIndex] = cell;
+			cells.get(cell).add(intersection);
+		}
+		intersectionsOfCell = new Intersection[columns * rows][];
+		for (int i = 0; i < columns * rows; i++) {
+			intersectionsOfCell[i] = cells.get(i).toArray(new Intersection[cells.get(i).size()]);
+		}
+	}
+
+	private int column(double x) {
+		return Math.min(columns - 1, Math.max(0, (int) ((x - minX) / CELL_SIZE)));
+	}
+
+	private int row(double y) {
+		return Math.min(rows - 1, Math.max(0, (int) ((y - minY) / CELL_SIZE)));
+	}
+
+	/**
+	 * @return the number of cells of the grid
+	 */
+	public int cellCount() {
+		return columns * rows;
+	}
+
+	/**
+	 * @param intersection an intersection of the map
+	 * @return the cell that contains the intersection
+	 */
+	public int cellOf(Intersection intersection) {
+		return cellOfIntersection[intersection.pathTableIndex];
+	}
+
+	/**
+	 * @param cell a cell of the grid
+	 * @return the intersections that lie in the cell
+	 */
+	public Intersection[] intersectionsOf(int cell) {
+		return intersectionsOfCell[cell];
+	}
+
+	/**
+	 * @param cell a cell of the grid
+	 * @return the column of the cell
+	 */
+	public int columnOf(int cell) {
+		return cell % columns;
+	}
+
+	/**
+	 * @param cell a cell of the grid
+	 * @return the row of the cell
+	 */
+	public int rowOf(int cell) {
+		return cell / columns;
+	}
+
+	/**
+	 * Get the cell at a column and a row.
+	 *
+	 * @param column the column of the cell
+	 * @param row the row of the cell
+	 * @return the cell, or -1 if the column or the row is outside the grid
+	 */
+	public int cellAt(int column, int row) {
+		if (column < 0 || column >= columns || row < 0 || row >= rows) {
+			return -1;
+		}
+		return column + row * columns;
+	}
+
+	/**
+	 * @param ring a ring number (see ringLowerBound)
+	 * @return the number of cells in the ring, including cells outside the grid
+	 */
+	public int ringSize(int ring) {
+		return ring == 0 ? 1 : 8 * ring;
+	}
+
+	/**
+	 * Get a cell of the ring of cells that are ring cells away (in columns or rows, whichever is larger)
+	 * from a center cell.
+	 *
+	 * @param center the center cell
+	 * @param ring the ring number
+	 * @param i the position in the ring, from 0 to ringSize(ring) - 1
+	 * @return the cell, or -1 if the position falls outside the grid
+	 */
+	public int cellInRing(int center, int ring, int i) {
+		int column = columnOf(center);
+		int row = rowOf(center);
+		if (i < 2 * ring + 1) {
+			// the bottom row of the ring
+			return cellAt(column - ring + i, row - ring);
+		} else if (i < 4 * ring + 2) {
+			// the top row of the ring
+			return cellAt(column - ring + (i - 2 * ring - 1), row + ring);
+		} else if (i < 6 * ring + 1) {
+			// the left column of the ring without its corners
+			return cellAt(column - ring, row - ring + 1 + (i - 4 * ring - 2));
+		} else {
+			// the right column of the ring without its corners
+			return cellAt(column + ring, row - ring + 1 + (i - 6 * ring - 1));
+		}
+	}
+
+	/**
+	 * @return the largest ring number (see ringLowerBound) that contains any cell of the grid
+	 */
+	public int maxRing() {
+		return Math.max(columns, rows);
+	}
+
+	/**
+	 * A lower bound of the travel time between an intersection and any intersection of the cells that are
+	 * ring cells away (in columns or rows, whichever is larger) from the cell of the intersection.
+	 *
+	 * @param ring the number of cells away from the cell of the intersection
+	 * @return the lower bound in seconds
+	 */
+	public long ringLowerBound(int ring) {
+		if (ring <= 1) {
+			return 0;
+		}
+		// One second is subtracted to stay on the safe side of floating point rounding.
+		return Math.max(0, (long) ((ring - 1) * CELL_SIZE / maxSpeed) - 1);
+	}
+
+	/**
+	 * A lower bound of the travel time between an intersection and any intersection of a cell.
+	 *
+	 * @param intersection the intersection
+	 * @param cell the cell
+	 * @return the lower bound in seconds
+	 */
+	public long cellLowerBound(Intersection intersection, int cell) {
+		double cellMinX = minX + columnOf(cell) * CELL_SIZE;
+		double cellMinY = minY + rowOf(cell) * CELL_SIZE;
+		double dx = Math.max(0, Math.max(cellMinX - intersection.getX(), intersection.getX() - (cellMinX + CELL_SIZE)));
+		double dy = Math.max(0, Math.max(cellMinY - intersection.getY(), intersection.getY() - (cellMinY + CELL_SIZE)));
+		// One second is subtracted to stay on the safe side of floating point rounding.
+		return Math.max(0, (long) (Math.sqrt(dx * dx + dy * dy) / maxSpeed) - 1);
+	}
+}
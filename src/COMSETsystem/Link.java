@@ -8,9 +8,9 @@ import java.awt.geom.Point2D;
 public class Link implements Comparable<Link> {
 
 	// The start (upstream) vertex of the link
-	public Vertex from;
+	public final Vertex from;
 	// The end (downstream) vertex of the link
-	public Vertex to;
+	public final Vertex to;
 	// length of the link segment in meters
 	public final double length;
 	// travel time of the link segment in seconds
@@ -19,16 +19,16 @@ public class Link implements Comparable<Link> {
 	public final double speed;
 	// a unique id
 	public final long id;
-	// reference to a Road object that contains this link
-	public Road road;
-	// the amount of time it takes to travel from the start of the road to the start vertex of this link 
-	public long beginTime = -1;
+	// reference to a Road object that contains this link; set by the Road
+	Road road;
+	// the amount of time it takes to travel from the start of the road to the start vertex of this link; set by the Road
+	long beginTime = -1;
 
 	// min and max coordinates of the link
-	public double minX;
-	public double minY;
-	public double maxX;
-	public double maxY;
+	public final double minX;
+	public final double minY;
+	public final double maxX;
+	public final double maxY;
 	
 	// an ID counter to get a unique id
 	private static long maxId = 0;
@@ -52,31 +52,24 @@ public class Link implements Comparable<Link> {
 		this.speed = speed;
 		this.travelTime = (int)(Math.ceil(length/speed));
 		this.road = null;
-		minX = Math.min(from.xy.getX(), to.getX());
-		minY = Math.min(from.xy.getY(), to.getY());
-		maxX = Math.max(from.xy.getX(), to.getX());
-		maxY = Math.max(from.xy.getY(), to.getY());
+		minX = Math.min(from.getX(), to.getX());
+		minY = Math.min(from.getY(), to.getY());
+		maxX = Math.max(from.getX(), to.getX());
+		maxY = Math.max(from.getY(), to.getY());
 	}
 	
 	/**
-	 * Constructing from an existing link
-	 * @param aLink an existing link
-	 * @param from the start intersection
-	 * @param to the end intersection
+	 * @return the road that contains this link, or null if the link is not part of a road
 	 */
-	public Link (Link aLink, Vertex from, Vertex to) {
-		this.id = aLink.id;
-		this.from = from;
-		this.to = to;
-		this.length = aLink.length;
-		this.speed = aLink.speed;
-		this.travelTime = aLink.travelTime;
-		this.beginTime = aLink.beginTime;
-		this.road = null;
-		minX = aLink.minX;
-		minY = aLink.minY;
-		maxX = aLink.maxX;
-		maxY = aLink.maxY;
+	public Road getRoad() {
+		return road;
+	}
+
+	/**
+	 * @return the amount of time it takes to travel from the start of the road to the start vertex of this link
+	 */
+	public long getBeginTime() {
+		return beginTime;
 	}
 
 	/**
@@ -2,11 +2,12 @@ package COMSETsystem;
 
 /**
  * Location on a road represented by the travel time from the start intersection of the road.
+ * A location cannot be modified, so the same location is passed to the simulator and the agents.
  */
 public class LocationOnRoad {
 
-	public Road road;
-	public long travelTimeFromStartIntersection;
+	public final Road road;
+	public final long travelTimeFromStartIntersection;
 
 	public LocationOnRoad(Road road, long travelTimeFromStartIntersection) {
 		this.road = road;
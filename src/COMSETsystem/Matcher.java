@@ -0,0 +1,82 @@
+package COMSETsystem;
+
+/**
+ * A Matcher implements the search of the Assignment Authority. When a resource becomes available, it finds the
+ * empty agent that can reach the resource the earliest; when an agent drops off a resource, it finds the waiting
+ * resource that the agent can reach the earliest. Different matchers find the same agents and resources in
+ * different ways, so the fastest one can be chosen for a given map and number of agents.
+ * 
+ * The simulator informs the matcher of every change of the empty agents and the waiting resources, so that a
+ * matcher can maintain its own indexes of them. The simulator itself keeps track of the empty agents and waiting
+ * resources in Simulator.emptyAgents and Simulator.waitingResources, and does all the bookkeeping of an
+ * assignment once the matcher has made its choice.
+ * 
+ * The matcher is chosen through the comset.matcher_class parameter in etc/config.properties. A Matcher class must
+ * have a public constructor that takes the Simulator as its only argument. It is constructed after the map is
+ * loaded and before any agent or resource is introduced.
+ */
+public interface Matcher {
+
+	/**
+	 * Find the empty agent that can reach the pickup location of a resource the earliest, provided that it can
+	 * get there before the resource expires. Ties are broken by the smallest agent id.
+	 * 
+	 * @param resource the resource that becomes available at resource.time
+	 * @return the agent, or null if no empty agent can reach the resource before it expires
+	 */
+	AgentEvent findAgentFor(ResourceEvent resource);
+
+	/**
+	 * Find the waiting resource that an agent can reach the earliest, provided that it can get there before the
+	 * resource expires. Ties are broken by the smallest resource id.
+	 * 
+	 * @param agent the agent that drops off a resource at agent.loc at agent.time
+	 * @return the resource, or null if the agent cannot reach any waiting resource before it expires
+	 */
+	ResourceEvent findResourceFor(AgentEvent agent);
+
+	/**
+	 * Called when an agent is introduced or drops off a resource without being assigned to a waiting resource.
+	 * 
+	 * @param agent the agent, which has been set up to reach the end of its road
+	 * @param currentTime the current simulation time
+	 */
+	void onAgentEmpty(AgentEvent agent, long currentTime);
+
+	/**
+	 * Called when an empty agent moves on to a next road or commits to a route (see BaseAgent.nextRoute).
+	 * 
+	 * @param agent the agent, which has been set up to reach the end of its next road or route
+	 * @param currentTime the current simulation time
+	 */
+	void onAgentMove(AgentEvent agent, long currentTime);
+
+	/**
+	 * Called when an empty agent is assigned to a resource and is no longer empty.
+	 * 
+	 * @param agent the agent
+	 */
+	void onAgentAssigned(AgentEvent agent);
+
+	/**
+	 * Called when no empty agent can reach a resource that becomes available, so that the resource waits for an
+	 * agent to drop off another resource.
+	 * 
+	 * @param resource the resource
+	 */
+	void onResourceWaiting(ResourceEvent resource);
+
+	/**
+	 * Called when a waiting resource expires.
+	 * 
+	 * @param resource the resource
+	 */
+	void onResourceExpired(ResourceEvent resource);
+
+	/**
+	 * Called when a waiting resource is assigned to an agent that drops off another resource.
+	 * 
+	 * @param resource the resource
+	 */
+	void onResourceAssigned(ResourceEvent resource);
+}
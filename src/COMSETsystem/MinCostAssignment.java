@@ -0,0 +1,225 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+
+/**
+ * The MinCostAssignment class solves a sparse assignment problem: every row is assigned to at most one column
+ * and every column to at most one row, using only the given row-column pairs, such that the total cost of the
+ * assigned pairs plus a fixed cost for every unassigned row is minimal.
+ *
+ * Every row gets a private dummy column at the unassigned cost, so that all rows can always be assigned. The
+ * rows are then added one at a time, each time augmenting along a shortest path found by Dijkstra's algorithm on
+ * the reduced costs (the successive shortest path or Hungarian method). The search stops at the first free
+ * column, and only the potentials of the columns and rows it has settled are updated, so the work per row is
+ * proportional to the part of the problem that competes for the same columns rather than to the whole problem.
+ * Ties are broken by the smallest column, which makes the result deterministic.
+ */
+public class MinCostAssignment {
+
+	// The number of rows and of real columns
+	private final int rows, columns;
+
+	// The pairs of each row in compressed sparse row form: the pairs of row r are rowStart[r] to rowStart[r + 1] - 1.
+	private final int[] rowStart;
+	private final int[] pairColumn;
+	private final long[] pairCost;
+
+	// The cost of leaving a row unassigned
+	private final long unassignedCost;
+
+	// The potentials of the rows and of the columns, including the dummy columns
+	private final long[] rowPotential, columnPotential;
+
+	// The column assigned to each row, and the row assigned to each column, or -1
+	private final int[] columnOfRow, rowOfColumn;
+
+	// The distances of a search, valid if seenIn equals search for a column
+	private final long[] rowDistance, columnDistance;
+	private final int[] seenIn;
+	private final boolean[] settled;
+	private int search;
+
+	// The row from which each column is reached by a search
+	private final int[] previousRow;
+
+	// The rows and columns settled by a search
+	private final int[] settledRows, settledColumns;
+	private int settledRowCount, settledColumnCount;
+
+	// A binary heap of columns ordered by distance and column. A column may occur more than once; the
+	// occurrences with an outdated distance are skipped.
+	private long[] heapDistance = new long[64];
+	private int[] heapColumn = new int[64];
+	private int heapSize;
+
+	/**
+	 * Constructor of MinCostAssignment.
+	 *
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 * @param rowStart the index of the first pair of each row in pairColumn and pairCost, followed by the
+	 * total number of pairs
+	 * @param pairColumn the column of each pair
+	 * @param pairCost the non-negative cost of each pair
+	 * @param unassignedCost the cost of leaving a row unassigned
+	 */
+	public MinCostAssignment(int rows, int columns, int[] rowStart, int[] pairColumn, long[] pairCost, long unassignedCost) {
+		this.rows = rows;
+		this.columns = columns;
+		this.rowStart = rowStart;
+		this.pairColumn = pairColumn;
+		this.pairCost = pairCost;
+		this.unassignedCost = unassignedCost;
+		rowPotential = new long[rows];
+		columnPotential = new long[columns + rows];
+		columnOfRow = new int[rows];
+		rowOfColumn = new int[columns + rows];
+		Arrays.fill(rowOfColumn, -1);
+		rowDistance = new long[rows];
+		columnDistance = new long[columns + rows];
+		seenIn = new int[columns + rows];
+		settled = new boolean[columns + rows];
+		previousRow = new int[columns + rows];
+		settledRows = new int[rows];
+		settledColumns = new int[columns + rows];
+	}
+
+	/**
+	 * Solve the assignment problem.
+	 *
+	 * @return the column assigned to each row, or -1 if the row is left unassigned
+	 */
+	public int[] solve() {
+		for (int row = 0; row < rows; row++) {
+			augment(row);
+		}
+		int[] result = new int[rows];
+		for (int row = 0; row < rows; row++) {
+			result[row] = columnOfRow[row] < columns ? columnOfRow[row] : -1;
+		}
+		return result;
+	}
+
+	/*
+	 * Assign a new row along a shortest augmenting path.
+	 */
+	private void augment(int source) {
+		search++;
+		heapSize = 0;
+		settledRowCount = 0;
+		settledColumnCount = 0;
+
+		rowDistance[source] = 0;
+		settledRows[settledRowCount++] = source;
+		relax(source, 0);
+
+		int freeColumn = -1;
+		long freeDistance = 0;
+		while (heapSize > 0) {
+			long distance = heapDistance[0];
+			int column = heapColumn[0];
+			pop();
+			if (settled[column] || distance > columnDistance[column]) {
+				continue;
+			}
+			settled[column] = true;
+			settledColumns[settledColumnCount++] = column;
+			int row = rowOfColumn[column];
+			if (row < 0) {
+				freeColumn = column;
+				freeDistance = distance;
+				break;
+			}
+			// The reduced cost of an assigned pair is zero, so the row of the column is at the same distance.
+			rowDistance[row] = distance;
+			settledRows[settledRowCount++] = row;
+			relax(row, distance);
+		}
+
+		// Update the potentials so that the reduced costs stay non-negative and become zero on the path.
+		for (int i = 0; i < settledRowCount; i++) {
+			rowPotential[settledRows[i]] += rowDistance[settledRows[i]] - freeDistance;
+		}
+		for (int i = 0; i < settledColumnCount; i++) {
+			columnPotential[settledColumns[i]] += columnDistance[settledColumns[i]] - freeDistance;
+			settled[settledColumns[i]] = false;
+		}
+
+		// Flip the pairs along the path.
+		int column = freeColumn;
+		while (true) {
+			int row = previousRow[column];
+			int nextColumn = columnOfRow[row];
+			columnOfRow[row] = column;
+			rowOfColumn[column] = row;
+			if (row == source) {
+				break;
+			}
+			column = nextColumn;
+		}
+	}
+
+	private void relax(int row, long distance) {
+		for (int pair = rowStart[row]; pair < rowStart[row + 1]; pair++) {
+			relax(row, pairColumn[pair], distance + pairCost[pair] + rowPotential[row] - columnPotential[pairColumn[pair]]);
+		}
+		int dummy = columns + row;
+		relax(row, dummy, distance + unassignedCost + rowPotential[row] - columnPotential[dummy]);
+	}
+
+	private void relax(int row, int column, long distance) {
+		if (settled[column]) {
+			return;
+		}
+		if (seenIn[column] != search || distance < columnDistance[column]) {
+			seenIn[column] = search;
+			columnDistance[column] = distance;
+			previousRow[column] = row;
+			push(distance, column);
+		}
+	}
+
+	private boolean before(long distance1, int column1, long distance2, int column2) {
+		return distance1 < distance2 || (distance1 == distance2 && column1 < column2);
+	}
+
+	private void push(long distance, int column) {
+		if (heapSize == heapDistance.length) {
+			heapDistance = Arrays.copyOf(heapDistance, heapSize * 2);
+			heapColumn = Arrays.copyOf(heapColumn, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!before(distance, column, heapDistance[parent], heapColumn[parent])) {
+				break;
+			}
+			heapDistance[i] = heapDistance[parent];
+			heapColumn[i] = heapColumn[parent];
+			i = parent;
+		}
+		heapDistance[i] = distance;
+		heapColumn[i] = column;
+	}
+
+	private void pop() {
+		heapSize--;
+		long distance = heapDistance[heapSize];
+		int column = heapColumn[heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && before(heapDistance[child + 1], heapColumn[child + 1], heapDistance[child], heapColumn[child])) {
+				child++;
+			}
+			if (!before(heapDistance[child], heapColumn[child], distance, column)) {
+				break;
+			}
+			heapDistance[i] = heapDistance[child];
+			heapColumn[i] = heapColumn[child];
+			i = child;
+		}
+		heapDistance[i] = distance;
+		heapColumn[i] = column;
+	}
+}
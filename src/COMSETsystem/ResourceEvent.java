@@ -21,6 +21,12 @@ public class ResourceEvent extends Event {
 	public final static int BECOME_AVAILABLE = 0;
 	public final static int EXPIRED = 1;
 
+	// The number of resource events created so far
+	private static int maxIndex = 0;
+
+	// A dense index among all resource events, in id order (see IndexedEventSet).
+	final int index;
+
 	// The location at which the resource is introduced.
 	public final LocationOnRoad pickupLoc;
 	// The destination of the resource.
@@ -38,6 +44,11 @@ public class ResourceEvent extends Event {
 	// The shortest travel time from pickupLoc to dropoffLoc
 	public long tripTime;
 
+	// Whether the resource is in the ExpirationWheel, and its neighbors in the list of its slot
+	boolean expiring;
+	ResourceEvent previousExpiring;
+	ResourceEvent nextExpiring;
+
 	/**
 	 * Constructor for class ResourceEvent.
 	 *
@@ -48,6 +59,7 @@ public class ResourceEvent extends Event {
 	 */
 	public ResourceEvent(LocationOnRoad pickupLoc, LocationOnRoad dropoffLoc, long availableTime, Simulator simulator) {
 		super(availableTime, simulator);
+		this.index = maxIndex++;
 		this.pickupLoc = pickupLoc;
 		this.dropoffLoc = dropoffLoc;
 		this.availableTime = availableTime;
@@ -58,12 +70,13 @@ public class ResourceEvent extends Event {
 
 	/**
 	 * Whenever a resource arrives/becomes available an event corresponding to
-	 * it gets triggered. When it triggers it checks for all the active agents
+	 * it gets triggered. When it triggers it asks the matcher of the simulator
 	 * which agent can get to the resource the fastest. The closest agent is
 	 * saved in the variable bestAgent. If there are no active agents or no
 	 * agent can get in time to the resource, the current resource gets added to
 	 * waitingResources such that once an agent gets available it will check if
-	 * it can get to the resource in time. Furthermore, calculate the score of
+	 * it can get to the resource in time, and its expiration is added to the
+	 * ExpirationWheel of the simulator. Furthermore, calculate the score of
 	 * this assignment according to the scoring rules. Also remove the assigned
 	 * agent from the PriorityQueue and from activeAgents.
 	 */
@@ -95,83 +108,85 @@ public class ResourceEvent extends Event {
 		//total number of resources from dataset appearing through the simulation increases
 		++simulator.totalResources;
 
-		// finds the agent with least travel time between itself and this resource
-		AgentEvent bestAgent = null;
-		long earliest = Long.MAX_VALUE;
-		LocationOnRoad bestAgentLocationOnRoad = null;
-		for (AgentEvent agent : simulator.emptyAgents) {
-
-			// Calculate the travel time from the agent's current location to resource.
-			// Assumption: agent.time is the arrival time at the end intersection of agent.loc.road. 
-			// This assumption is true for empty agents. Notice that when agents are initially introduced
-			// to the system, they are empty and agent.time is not necessarily the time to arrive at the end intersection.
-			// However, all the agents are triggered once before the earliest resource (see MapWithData.createMapWithData).
-			// When that happens, agent.time is updated to the end intersection arrival time. 
-			// Thus the assumption is still true.
-			long travelTimeToEndIntersection = agent.time - time;
-			long travelTimeFromStartIntersection = agent.loc.road.travelTime - travelTimeToEndIntersection;
-			LocationOnRoad agentLocationOnRoad = new LocationOnRoad(agent.loc.road, travelTimeFromStartIntersection);
-			long travelTime = simulator.map.travelTimeBetween(agentLocationOnRoad, pickupLoc);
-			long arriveTime = travelTime + time;
-			if (arriveTime < earliest) {
-				bestAgent = agent;
-				earliest = arriveTime;
-				bestAgentLocationOnRoad = agentLocationOnRoad;
-			}
-		}
+		// finds the agent with least travel time between itself and this resource, provided that
+		// it can reach the resource before the resource expires. With batch dispatching the resource 
+		// waits for the next BatchEvent instead.
+		AgentEvent bestAgent = simulator.batchWindow > 0 ? null : simulator.matcher.findAgentFor(this);
 
-		if (earliest > availableTime + simulator.ResourceMaximumLifeTime) {
+		if (bestAgent == null) {
 			simulator.waitingResources.add(this);
+			simulator.matcher.onResourceWaiting(this);
 			this.time += simulator.ResourceMaximumLifeTime;
 			this.eventCause = EXPIRED;
+			simulator.expirations.add(this);
 			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Setup expiration event at time " + this.time, this);
-			return this;
+			return null;
 		} else { // make assignment
-			// update the statistics       	
-			long cruiseTime = time - bestAgent.startSearchTime;
-			long approachTime = earliest - time;
-			long searchTime = cruiseTime + approachTime;
-			long waitTime = earliest - availableTime;
-
-			simulator.totalAgentCruiseTime += cruiseTime;
-			simulator.totalAgentApproachTime += approachTime;
-			simulator.totalAgentSearchTime += searchTime;
-			simulator.totalResourceWaitTime += waitTime;
-			simulator.totalResourceTripTime += tripTime;
-			simulator.totalAssignments++;
-
-
-			// Inform the assignment to the agent.
-			bestAgent.assignedTo(bestAgentLocationOnRoad, time, id, pickupLoc, dropoffLoc);
-
-			// "Label" the agent as occupied.
-			simulator.emptyAgents.remove(bestAgent);
-
-			simulator.events.remove(bestAgent);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Assigned to agent id = " + bestAgent.id + " currently at " + bestAgent.loc, this);
-
-			bestAgent.setEvent(earliest + tripTime, dropoffLoc, AgentEvent.DROPPING_OFF);
-
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From agent to resource = " + approachTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From pickupLoc to dropoffLoc = " + tripTime + " seconds.", this);            
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "cruise time = " + cruiseTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "approach time = " + approachTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "search time = " + searchTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "wait time = " + waitTime + " seconds.", this);
-			Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next agent trigger time = " + bestAgent.time, this);
-
-			// Add the event back to the event queue.
-			return bestAgent;
+			// Add the agent event back to the event queue.
+			return assignTo(bestAgent, time);
 		}
 	}
 
+	/**
+	 * Assign this resource to an empty agent, update the statistics, and set up the agent to drop off this
+	 * resource. The caller is responsible for adding the agent back to the event queue.
+	 * 
+	 * @param bestAgent the empty agent, which must be able to reach this resource before it expires
+	 * @param currentTime the current simulation time
+	 * @return the agent
+	 */
+	AgentEvent assignTo(AgentEvent bestAgent, long currentTime) {
+		// Calculate the travel time from the agent's current location to resource.
+		// Assumption: agent.roadEndTimeAt(currentTime) is the arrival time at the end intersection of agent.roadAt(currentTime). 
+		// This assumption is true for empty agents. Notice that when agents are initially introduced
+		// to the system, they are empty and agent.time is not necessarily the time to arrive at the end intersection.
+		// However, all the agents are triggered once before the earliest resource (see MapWithData.createMapWithData).
+		// When that happens, agent.time is updated to the end intersection arrival time. 
+		// Thus the assumption is still true.
+		Road agentRoad = bestAgent.roadAt(currentTime);
+		long travelTimeToEndIntersection = bestAgent.roadEndTimeAt(currentTime) - currentTime;
+		long travelTimeFromStartIntersection = agentRoad.travelTime - travelTimeToEndIntersection;
+		LocationOnRoad bestAgentLocationOnRoad = new LocationOnRoad(agentRoad, travelTimeFromStartIntersection);
+		long earliest = currentTime + simulator.map.travelTimeBetween(bestAgentLocationOnRoad, pickupLoc);
+
+		// update the statistics       	
+		long cruiseTime = currentTime - bestAgent.startSearchTime;
+		long approachTime = earliest - currentTime;
+		long searchTime = cruiseTime + approachTime;
+		long waitTime = earliest - availableTime;
+
+		simulator.recordAssignment(cruiseTime, approachTime, waitTime, tripTime);
+
+		// Inform the assignment to the agent.
+		bestAgent.assignedTo(bestAgentLocationOnRoad, currentTime, id, pickupLoc, dropoffLoc);
+
+		// "Label" the agent as occupied.
+		simulator.emptyAgents.remove(bestAgent);
+		simulator.matcher.onAgentAssigned(bestAgent);
+
+		simulator.events.remove(bestAgent);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Assigned to agent id = " + bestAgent.id + " currently at " + bestAgentLocationOnRoad, this);
+
+		bestAgent.setEvent(earliest + tripTime, dropoffLoc, AgentEvent.DROPPING_OFF);
+
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From agent to resource = " + approachTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "From pickupLoc to dropoffLoc = " + tripTime + " seconds.", this);            
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "cruise time = " + cruiseTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "approach time = " + approachTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "search time = " + searchTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "wait time = " + waitTime + " seconds.", this);
+		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Next agent trigger time = " + bestAgent.time, this);
+
+		return bestAgent;
+	}
+
 	/*
 	 * Handler of an EXPIRED event.
 	 */
 	public void expireHandler() {
-		simulator.expiredResources ++;
-		simulator.totalResourceWaitTime += simulator.ResourceMaximumLifeTime;
+		simulator.recordExpiration();
 		simulator.waitingResources.remove(this);
+		simulator.matcher.onResourceExpired(this);
 		Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Expired.", this);
 
 	}
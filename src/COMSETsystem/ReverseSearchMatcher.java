@@ -0,0 +1,189 @@
+package COMSETsystem;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * The ReverseSearchMatcher runs a Dijkstra search backwards over the roads from the pickup location of a
+ * resource, bounded by the time the resource has left before it expires. Every settled intersection has the
+ * travel time from that intersection to the pickup location, so the agents whose road ends at it (see
+ * EmptyAgentIndex) are checked as soon as it is settled. Since an agent still has to reach the end of its road,
+ * the search does not stop at the first settled intersection with an agent but continues until the travel time
+ * of the settled intersections alone exceeds the best travel time found so far.
+ *
+ * The reverse search settles about as many intersections as lie closer to the pickup location than the nearest
+ * empty agent, which is few when many agents are empty and most of the map when few agents are empty. The
+ * matcher therefore falls back to scanning all empty agents (see ScanMatcher) when their number is at most
+ * the scan threshold. The default threshold balances the cost of both: with n agents spread over a map with v
+ * intersections, the search settles about v / n intersections with a few heap operations each, and the scan
+ * computes n travel times, which are about equal at n = sqrt(SEARCH_COST_FACTOR * v).
+ * 
+ * Waiting resources are found the same way as by the IndexMatcher.
+ */
+public class ReverseSearchMatcher extends IndexMatcher {
+
+	// The estimated cost of settling an intersection relative to the cost of computing an agent's travel time
+	public static final int SEARCH_COST_FACTOR = 8;
+
+	// The matcher that is used when few agents are empty
+	private final ScanMatcher scanMatcher;
+
+	// The largest number of empty agents for which all of them are scanned
+	private int scanThreshold;
+
+	// The incoming roads of each intersection in compressed sparse row form (see CityMap.incomingStart)
+	private final int[] incomingStart;
+	private final int[] incomingFrom;
+	private final long[] incomingTravelTime;
+
+	// The tentative travel time to the pickup location of each intersection, valid if visitedIn equals search
+	private final long[] travelTime;
+	private final int[] visitedIn;
+	private int search;
+
+	// A binary heap of intersections ordered by tentative travel time. An intersection may occur more than
+	// once; the occurrences with an outdated travel time are skipped.
+	private long[] heapTravelTime = new long[64];
+	private int[] heapIntersection = new int[64];
+	private int heapSize;
+
+	/**
+	 * Constructor of ReverseSearchMatcher.
+	 *
+	 * @param simulator the simulator
+	 */
+	public ReverseSearchMatcher(Simulator simulator) {
+		super(simulator);
+		scanMatcher = new ScanMatcher(simulator);
+
+		int size = simulator.map.intersectionCount();
+		scanThreshold = (int) Math.sqrt((double) SEARCH_COST_FACTOR * size);
+		incomingStart = simulator.map.incomingStart;
+		incomingFrom = simulator.map.incomingFrom;
+		incomingTravelTime = simulator.map.incomingTravelTime;
+		travelTime = new long[size];
+		visitedIn = new int[size];
+	}
+
+	/**
+	 * Set the largest number of empty agents for which all of them are scanned instead of searched.
+	 *
+	 * @param scanThreshold the number of empty agents
+	 */
+	public void setScanThreshold(int scanThreshold) {
+		this.scanThreshold = scanThreshold;
+	}
+
+	@Override
+	public AgentEvent findAgentFor(ResourceEvent resource) {
+		if (simulator.emptyAgents.size() <= scanThreshold) {
+			return scanMatcher.findAgentFor(resource);
+		}
+
+		long currentTime = resource.time;
+		LocationOnRoad destination = resource.pickupLoc;
+		long offset = destination.travelTimeFromStartIntersection;
+		emptyAgentIndex.catchUp(currentTime);
+
+		AgentEvent bestAgent = null;
+		long bestTravelTime = resource.expirationTime - currentTime;
+
+		// The agents on the pickup road may reach it directly, so check all of them.
+		Intersection endOfDestinationRoad = destination.road.to;
+		for (AgentEvent agent : emptyAgentIndex.agentsAt(endOfDestinationRoad)) {
+			long travelTimeToEndIntersection = agent.indexedEndTime - currentTime;
+			Road road = agent.roadAt(currentTime);
+			long agentTravelTime = simulator.map.travelTimeBetween(road, road.travelTime - travelTimeToEndIntersection, destination.road, offset);
+			if (agentTravelTime < bestTravelTime || (agentTravelTime == bestTravelTime && (bestAgent == null || agent.id < bestAgent.id))) {
+				bestAgent = agent;
+				bestTravelTime = agentTravelTime;
+			}
+		}
+
+		// Search backwards from the start intersection of the pickup road.
+		search++;
+		heapSize = 0;
+		int target = destination.road.from.pathTableIndex;
+		visitedIn[target] = search;
+		travelTime[target] = 0;
+		push(0, target);
+		while (heapSize > 0) {
+			long settledTravelTime = heapTravelTime[0];
+			int settled = heapIntersection[0];
+			pop();
+			if (settledTravelTime > travelTime[settled]) {
+				continue;
+			}
+			if (settledTravelTime + offset > bestTravelTime) {
+				break;
+			}
+
+			Intersection intersection = simulator.map.intersectionAt(settled);
+			if (intersection != endOfDestinationRoad) {
+				TreeSet<AgentEvent> bucket = emptyAgentIndex.agentsAt(intersection);
+				if (!bucket.isEmpty()) {
+					AgentEvent agent = bucket.first();
+					long agentTravelTime = agent.indexedEndTime - currentTime + settledTravelTime + offset;
+					if (agentTravelTime < bestTravelTime || (agentTravelTime == bestTravelTime && (bestAgent == null || agent.id < bestAgent.id))) {
+						bestAgent = agent;
+						bestTravelTime = agentTravelTime;
+					}
+				}
+			}
+
+			for (int k = incomingStart[settled]; k < incomingStart[settled + 1]; k++) {
+				int from = incomingFrom[k];
+				long newTravelTime = settledTravelTime + incomingTravelTime[k];
+				if (newTravelTime + offset > bestTravelTime) {
+					continue;
+				}
+				if (visitedIn[from] != search || newTravelTime < travelTime[from]) {
+					visitedIn[from] = search;
+					travelTime[from] = newTravelTime;
+					push(newTravelTime, from);
+				}
+			}
+		}
+		return bestAgent;
+	}
+
+	private void push(long key, int intersection) {
+		if (heapSize == heapTravelTime.length) {
+			heapTravelTime = Arrays.copyOf(heapTravelTime, heapSize * 2);
+			heapIntersection = Arrays.copyOf(heapIntersection, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (heapTravelTime[parent] <= key) {
+				break;
+			}
+			heapTravelTime[i] = heapTravelTime[parent];
+			heapIntersection[i] = heapIntersection[parent];
+			i = parent;
+		}
+		heapTravelTime[i] = key;
+		heapIntersection[i] = intersection;
+	}
+
+	private void pop() {
+		heapSize--;
+		long key = heapTravelTime[heapSize];
+		int intersection = heapIntersection[heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && heapTravelTime[child + 1] < heapTravelTime[child]) {
+				child++;
+			}
+			if (key <= heapTravelTime[child]) {
+				break;
+			}
+			heapTravelTime[i] = heapTravelTime[child];
+			heapIntersection[i] = heapIntersection[child];
+			i = child;
+		}
+		heapTravelTime[i] = key;
+		heapIntersection[i] = intersection;
+	}
+}
@@ -1,6 +1,8 @@
 package COMSETsystem;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /*
  * The Road class defines a directed road segment between two intersections.
@@ -10,58 +12,59 @@ import java.util.ArrayList;
 public class Road implements Comparable<Road> {
 
 	// The start (upstream) intersection of the road
-	public Intersection from;
+	public final Intersection from;
 	// The end (downstream) intersection of the road
-	public Intersection to;
+	public final Intersection to;
 	// length of the road segment in meters
-	public double length;
+	public final double length;
 	// travel time of the road segment in seconds
-	public long travelTime;
+	public final long travelTime;
 	// a unique id
-	public long id;
+	public final long id;
+	// the index of the road in CityMap.roads(); set by the CityMap
+	int index;
 
 	// an ID counter to get a unique id
 	private static long maxId = 0;
 	
 	// links that constitute the road
-	public ArrayList<Link> links;
+	public final List<Link> links;
 
-    /**
-     * Constructing an "empty" road object.
-     */
-	public Road() {
-		this.id = maxId++;
-		this.length = 0;
-		this.travelTime = 0;
-		links = new ArrayList<>();
-	}
-	
 	/**
-	 * Creating a copy of a road
-	 * @param road the road to copy
+	 * Constructing a road from its links, and adding it to the roads of its start and end intersections.
+	 * 
 	 * @param from the start intersection
 	 * @param to the end intersection
-	 * @param links a list of links
+	 * @param links the links from the vertex of the start intersection to the vertex of the end intersection
+	 * @throws IllegalStateException if one of the intersections is part of a CityMap already
 	 */
-	public Road(Road road, Intersection from, Intersection to, ArrayList<Link> links) {
-		this.id = road.id;
-		this.length = road.length;
-		this.travelTime = road.travelTime;
+	public Road(Intersection from, Intersection to, List<Link> links) {
+		if (from.map != null || to.map != null) {
+			throw new IllegalStateException("No roads can be added to the intersections of a CityMap");
+		}
+		this.id = maxId++;
 		this.from = from;
-		this.to= to;
-		this.links = links;
+		this.to = to;
+		double length = 0;
+		long travelTime = 0;
+		for (Link link : links) {
+			link.road = this;
+			link.beginTime = travelTime;
+			length += link.length;
+			travelTime += link.travelTime;
+		}
+		this.length = length;
+		this.travelTime = travelTime;
+		this.links = Collections.unmodifiableList(new ArrayList<>(links));
+		from.roadsFrom.put(to, this);
+		to.roadsTo.put(from, this);
 	}
-	
+
 	/**
-	 * Add a link to the road
-	 * @param link
+	 * @return the index of the road in CityMap.roads() (see CityMap.roadAt)
 	 */
-	public void addLink(Link link) {
-		links.add(link);
-		link.road = this;
-		link.beginTime = this.travelTime;
-		this.length += link.length;
-		this.travelTime += link.travelTime;
+	public int getIndex() {
+		return index;
 	}
 
 	/**
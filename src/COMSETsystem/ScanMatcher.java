@@ -0,0 +1,187 @@
+package COMSETsystem;
+
+import java.util.stream.IntStream;
+
+/**
+ * The ScanMatcher computes the travel time from every empty agent to a resource, and from an agent to every
+ * waiting resource. It does not maintain any index. This is the default matcher, and the most efficient one
+ * when there are only few empty agents and waiting resources.
+ * 
+ * When there are at least as many empty agents as the parallel threshold (see comset.matcher_parallel_threshold
+ * in etc/config.properties), the scan for the nearest agent is split into chunks of consecutive agents that are
+ * scanned in parallel. Each chunk first takes a snapshot of the positions of its agents (the row of the end
+ * intersection of the road in the travel time table and the travel time to that intersection) into arrays and
+ * then reduces them to the agent with the smallest travel time (see TravelTimeKernel). The chunks are combined
+ * in id order, so ties are broken by the smallest agent id exactly as in the sequential scan. Below the
+ * threshold the scan stays sequential, since forking costs more than it saves.
+ */
+public class ScanMatcher implements Matcher {
+
+	// The default number of empty agents from which on the scan runs in parallel
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 2000;
+
+	// A reference to the Simulator
+	protected final Simulator simulator;
+
+	// The number of empty agents from which on the scan runs in parallel
+	private final int parallelThreshold;
+
+	// The number of chunks of a parallel scan
+	private final int chunks;
+
+	// The empty agents in id order, and the snapshot of their positions, of a parallel scan
+	private AgentEvent[] agents = new AgentEvent[0];
+	private int[] agentRowOffsets = new int[0];
+	private int[] agentTravelTimesToEnd = new int[0];
+
+	// The smallest travel time of each chunk, and the index in agents at which it is found, or -1
+	private final long[] chunkTravelTime;
+	private final int[] chunkAgent;
+
+	/**
+	 * Constructor of ScanMatcher.
+	 * 
+	 * @param simulator the simulator
+	 */
+	public ScanMatcher(Simulator simulator) {
+		this.simulator = simulator;
+		this.parallelThreshold = simulator.matcherParallelThreshold;
+		this.chunks = 4 * Runtime.getRuntime().availableProcessors();
+		this.chunkTravelTime = new long[chunks];
+		this.chunkAgent = new int[chunks];
+	}
+
+	@Override
+	public AgentEvent findAgentFor(ResourceEvent resource) {
+		if (simulator.emptyAgents.size() >= parallelThreshold) {
+			return findAgentInParallel(resource);
+		}
+
+		AgentEvent bestAgent = null;
+		long earliest = Long.MAX_VALUE;
+		for (AgentEvent agent : simulator.emptyAgents) {
+			// Calculate the travel time from the agent's current location to resource.
+			Road agentRoad = agent.roadAt(resource.time);
+			long travelTimeToEndIntersection = agent.roadEndTimeAt(resource.time) - resource.time;
+			long travelTimeFromStartIntersection = agentRoad.travelTime - travelTimeToEndIntersection;
+			long travelTime = simulator.map.travelTimeBetween(agentRoad, travelTimeFromStartIntersection, resource.pickupLoc.road, resource.pickupLoc.travelTimeFromStartIntersection);
+			long arriveTime = travelTime + resource.time;
+			if (arriveTime < earliest) {
+				bestAgent = agent;
+				earliest = arriveTime;
+			}
+		}
+
+		if (earliest > resource.expirationTime) {
+			return null;
+		}
+		return bestAgent;
+	}
+
+	/*
+	 * The parallel version of findAgentFor.
+	 */
+	private AgentEvent findAgentInParallel(ResourceEvent resource) {
+		int size = simulator.emptyAgents.size();
+		if (agents.length < size) {
+			agents = new AgentEvent[2 * size];
+			agentRowOffsets = new int[2 * size];
+			agentTravelTimesToEnd = new int[2 * size];
+		}
+		agents = simulator.emptyAgents.toArray(agents);
+
+		IntStream.range(0, chunks).parallel().forEach(chunk -> scanChunk(chunk, size, resource));
+
+		int best = -1;
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			if (chunkAgent[chunk] >= 0 && (best < 0 || chunkTravelTime[chunk] < chunkTravelTime[best])) {
+				best = chunk;
+			}
+		}
+		if (best < 0 || resource.time + chunkTravelTime[best] > resource.expirationTime) {
+			return null;
+		}
+		return agents[chunkAgent[best]];
+	}
+
+	/*
+	 * Find the agent with the smallest travel time, and the smallest id among those, in a chunk of the agents.
+	 */
+	private void scanChunk(int chunk, int size, ResourceEvent resource) {
+		int from = (int) ((long) size * chunk / chunks);
+		int to = (int) ((long) size * (chunk + 1) / chunks);
+		long currentTime = resource.time;
+		Road pickupRoad = resource.pickupLoc.road;
+		long pickupOffset = resource.pickupLoc.travelTimeFromStartIntersection;
+		int intersectionCount = simulator.map.intersections().size();
+
+		// Take a snapshot of the positions of the agents. The agents on the pickup road before the pickup
+		// location reach it directly, which is never slower than through the end intersection of the road.
+		long bestTravelTime = Long.MAX_VALUE;
+		int bestAgent = -1;
+		for (int i = from; i < to; i++) {
+			Road road = agents[i].roadAt(currentTime);
+			int travelTimeToEndIntersection = (int) (agents[i].roadEndTimeAt(currentTime) - currentTime);
+			agentRowOffsets[i] = road.to.pathTableIndex * intersectionCount;
+			agentTravelTimesToEnd[i] = travelTimeToEndIntersection;
+			long travelTimeFromStartIntersection = road.travelTime - travelTimeToEndIntersection;
+			if (road == pickupRoad && travelTimeFromStartIntersection <= pickupOffset && pickupOffset - travelTimeFromStartIntersection < bestTravelTime) {
+				bestTravelTime = pickupOffset - travelTimeFromStartIntersection;
+				bestAgent = i;
+			}
+		}
+
+		// Find the agent that reaches the pickup location the earliest through the end of its road.
+		int[] travelTimeTable = simulator.map.travelTimeTable();
+		int agent = TravelTimeKernel.get().argmin(travelTimeTable, pickupRoad.from.pathTableIndex, agentRowOffsets, agentTravelTimesToEnd, from, to);
+		if (agent >= 0) {
+			long travelTime = agentTravelTimesToEnd[agent] + travelTimeTable[agentRowOffsets[agent] + pickupRoad.from.pathTableIndex] + pickupOffset;
+			if (travelTime < bestTravelTime || (travelTime == bestTravelTime && agent < bestAgent)) {
+				bestTravelTime = travelTime;
+				bestAgent = agent;
+			}
+		}
+		chunkTravelTime[chunk] = bestTravelTime;
+		chunkAgent[chunk] = bestAgent;
+	}
+
+	@Override
+	public ResourceEvent findResourceFor(AgentEvent agent) {
+		ResourceEvent bestResource = null;
+		long earliest = Long.MAX_VALUE;
+		for (ResourceEvent resource : simulator.waitingResources) {
+			// If resource is in waitingResources, then it must have not expired yet
+			long arriveTime = agent.time + simulator.map.travelTimeBetween(agent.loc, resource.pickupLoc);
+			// if the resource is reachable before expiration
+			if (arriveTime <= resource.expirationTime && arriveTime < earliest) {
+				earliest = arriveTime;
+				bestResource = resource;
+			}
+		}
+		return bestResource;
+	}
+
+	@Override
+	public void onAgentEmpty(AgentEvent agent, long currentTime) {
+	}
+
+	@Override
+	public void onAgentMove(AgentEvent agent, long currentTime) {
+	}
+
+	@Override
+	public void onAgentAssigned(AgentEvent agent) {
+	}
+
+	@Override
+	public void onResourceWaiting(ResourceEvent resource) {
+	}
+
+	@Override
+	public void onResourceExpired(ResourceEvent resource) {
+	}
+
+	@Override
+	public void onResourceAssigned(ResourceEvent resource) {
+	}
+}
@@ -2,7 +2,10 @@ package COMSETsystem;
 
 import MapCreation.*;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.text.NumberFormat;
+import java.time.ZoneId;
 import java.util.*;
 import me.tongfei.progressbar.*;
 
@@ -22,25 +25,25 @@ import DataParsing.*;
  * interaction (triggering). There's an event corresponding to every existent
  * Agent and for every resource that hasn't arrived yet. All of this events are
  * in a PriorityQueue called events which is ordered by their time in an
- * increasing way.
+ * increasing way. The expirations of the resources that wait for an agent
+ * are kept apart in an ExpirationWheel called expirations.
  */
 public class Simulator {
 
-	// The map that everything will happen on.
+	// The map that everything will happen on. It cannot be modified, so it is passed to the agents as well.
 	protected CityMap map;
 
-	// A deep copy of map to be passed to agents. 
-	// This is a way to make map unmodifiable.
-	protected CityMap mapForAgents;
-
 	// The event queue.
 	protected PriorityQueue<Event> events = new PriorityQueue<>();
 
-	// The set of empty agents.
-	protected TreeSet<AgentEvent> emptyAgents = new TreeSet<>(new AgentEventComparator());
+	// The expirations of the waiting resources, which are triggered along with the events of the event queue.
+	protected ExpirationWheel expirations;
+
+	// The set of empty agents, in id order.
+	protected IndexedEventSet<AgentEvent> emptyAgents = new IndexedEventSet<>(AgentEvent.class, agent -> agent.index);
 
-	// The set of resources that with no agent assigned to it yet.
-	protected TreeSet<ResourceEvent> waitingResources = new TreeSet<>(new ResourceEventComparator());
+	// The set of resources that with no agent assigned to it yet, in id order.
+	protected IndexedEventSet<ResourceEvent> waitingResources = new IndexedEventSet<>(ResourceEvent.class, resource -> resource.index);
 
 	// The maximum life time of a resource in seconds. This is a parameter of the simulator. 
 	public long ResourceMaximumLifeTime; 
@@ -55,6 +58,15 @@ public class Simulator {
 	// Full path to a KML defining the bounding polygon to crop the map
 	protected String boundingPolygonKMLFile;
 
+	// Full path to the compiled map file (see CompiledMap), or null to always create the map from mapJSONFile
+	protected String compiledMapFile = null;
+
+	// Whether to group vertices that are close together when creating the map (see MapCreator.groupVertices)
+	protected boolean groupVertices = false;
+
+	// The time zone of the map, or null to compute it from the map (see CityMap.computeZoneId)
+	protected ZoneId zoneId = null;
+
 	// The simulation end time is the expiration time of the last resource.
 	protected long simulationEndTime; 
 
@@ -96,6 +108,21 @@ public class Simulator {
 	// A class that extends BaseAgent and implements a search routing strategy
 	protected final Class<? extends BaseAgent> agentClass;
 
+	// A class that implements Matcher and finds the agents and resources to assign to each other
+	protected Class<? extends Matcher> matcherClass = ScanMatcher.class;
+
+	// The matcher used by the Assignment Authority
+	protected Matcher matcher;
+
+	// The number of empty agents up to which the ReverseSearchMatcher scans all of them; negative for its default
+	protected int matcherScanThreshold = -1;
+
+	// The number of empty agents from which on the ScanMatcher scans them in parallel
+	protected int matcherParallelThreshold = ScanMatcher.DEFAULT_PARALLEL_THRESHOLD;
+
+	// The time in seconds between two batches of assignments (see BatchEvent), or 0 to assign immediately
+	protected long batchWindow = 0;
+
 	/**
 	 * Constructor of the class Main. This is made such that the type of
 	 * agent/resourceAnalyzer used is not hardcoded and the users can choose
@@ -135,23 +162,60 @@ public class Simulator {
 
 		this.ResourceMaximumLifeTime = maximumLifeTime;
 
+		this.expirations = new ExpirationWheel(maximumLifeTime);
+
 		this.resourceFile = resourceFile;
 
-		MapCreator creator = new MapCreator(this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
-		System.out.println("Creating the map...");
+		// Load the compiled map if it is compiled from the same files, and create it otherwise.
+		map = null;
+		if (compiledMapFile != null) {
+			System.out.println("Loading the compiled map...");
+			map = CompiledMap.load(compiledMapFile, this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction, groupVertices);
+			if (map != null) {
+				// The resources are matched to the map within the bounding polygon, which a map creator would set.
+				MapCreator.setBoundingPolygon(this.boundingPolygonKMLFile);
+			}
+		}
+		MapCreator creator = null;
+		if (map == null) {
+			creator = new MapCreator(this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
+			creator.setGroupVertices(groupVertices);
+			System.out.println("Creating the map...");
+
+			creator.createMap();
 
-		creator.createMap();
+			// Output the map
+			map = creator.outputCityMap();
+		}
+
+		// Use the configured time zone, so that it is not computed, also not for compiling the map.
+		if (zoneId != null) {
+			map.setZoneId(zoneId);
+		}
 
-		// Output the map
-		map = creator.outputCityMap();
+		if (creator != null && compiledMapFile != null) {
+			System.out.println("Compiling the map...");
+			try {
+				CompiledMap.save(creator, compiledMapFile, this.mapJSONFile, this.boundingPolygonKMLFile, speedReduction);
+			} catch (IOException e) {
+				System.out.println("error IOException");
+				e.printStackTrace();
+			}
+		}
 
 		// Pre-compute shortest travel times between all pairs of intersections.
 		System.out.println("Pre-computing all pair travel times...");
 		map.calcTravelTimes();
 
-		// Make a map copy for agents to use so that an agent cannot modify the map used by
-		// the simulator
-		mapForAgents = map.makeCopy();
+		// Create the matcher before any agent is placed, so that it can index all agents.
+		try {
+			matcher = matcherClass.getConstructor(Simulator.class).newInstance(this);
+		} catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException e) {
+			e.printStackTrace();
+		}
+		if (matcher instanceof ReverseSearchMatcher && matcherScanThreshold >= 0) {
+			((ReverseSearchMatcher) matcher).setScanThreshold(matcherScanThreshold);
+		}
 
 		MapWithData mapWD = new MapWithData(map, this.resourceFile, agentPlacementRandomSeed);
 
@@ -168,6 +232,36 @@ public class Simulator {
 
 		// Initialize the event queue.
 		events = mapWD.getEvents();
+
+		// Schedule the first batch one batch window after the agents are deployed.
+		if (batchWindow > 0) {
+			events.add(new BatchEvent(events.peek().time + batchWindow, this));
+		}
+	}
+
+	/**
+	 * Update the statistics with an assignment of an agent to a resource.
+	 * 
+	 * @param cruiseTime the time the agent has been searching until the assignment
+	 * @param approachTime the time the agent needs to reach the resource
+	 * @param waitTime the time the resource waits from becoming available until it is picked up
+	 * @param tripTime the time from picking up the resource to dropping it off
+	 */
+	void recordAssignment(long cruiseTime, long approachTime, long waitTime, long tripTime) {
+		totalAgentCruiseTime += cruiseTime;
+		totalAgentApproachTime += approachTime;
+		totalAgentSearchTime += cruiseTime + approachTime;
+		totalResourceWaitTime += waitTime;
+		totalResourceTripTime += tripTime;
+		totalAssignments++;
+	}
+
+	/**
+	 * Update the statistics with a resource that expires without being assigned.
+	 */
+	void recordExpiration() {
+		expiredResources++;
+		totalResourceWaitTime += ResourceMaximumLifeTime;
 	}
 
 	/**
@@ -186,8 +280,21 @@ public class Simulator {
 		}
 		try (ProgressBar pb = new ProgressBar("Progress:", 100, ProgressBarStyle.ASCII)) {
 			long beginTime = events.peek().time;
-			while (events.peek().time <= simulationEndTime) {
-				Event toTrigger = events.poll();
+			while (true) {
+				// The next event is the earliest of the event queue and the expirations.
+				Event toTrigger = events.peek();
+				ResourceEvent expiring = expirations.peek();
+				if (expiring != null && expiring.compareTo(toTrigger) < 0) {
+					toTrigger = expiring;
+				}
+				if (toTrigger.time > simulationEndTime) {
+					break;
+				}
+				if (toTrigger == expiring) {
+					expirations.poll();
+				} else {
+					events.poll();
+				}
 				pb.stepTo((long)(((float)(toTrigger.time - beginTime)) / (simulationEndTime - beginTime) * 100.0));
 				Event e = toTrigger.trigger();
 				if (e != null) { 
@@ -284,6 +391,8 @@ public class Simulator {
 			System.out.println("Number of resources: " + totalResources);
 			System.out.println("Resource Maximum Life Time: " + ResourceMaximumLifeTime + " seconds");
 			System.out.println("Agent class: " + agentClass.getName());
+			System.out.println("Matcher class: " + matcherClass.getName());
+			System.out.println("Batch window: " + (batchWindow > 0 ? batchWindow + " seconds" : "none"));
 
 			System.out.println("\n***Statistics***");
 		
@@ -313,50 +422,75 @@ public class Simulator {
 	}
 
 	/**
-	 * Compares agent events
+	 * Sets the matcher class that finds the agents and resources to assign to each other. Must be called
+	 * before configure.
+	 * 
+	 * @param matcherClass the matcher class
+	 */
+	public void setMatcherClass(Class<? extends Matcher> matcherClass) {
+		this.matcherClass = matcherClass;
+	}
+
+	/**
+	 * Sets the number of empty agents up to which the ReverseSearchMatcher scans all empty agents instead of
+	 * searching the map. Must be called before configure.
+	 * 
+	 * @param matcherScanThreshold the number of empty agents; negative for the default
 	 */
-	class AgentEventComparator implements Comparator<AgentEvent> {
+	public void setMatcherScanThreshold(int matcherScanThreshold) {
+		this.matcherScanThreshold = matcherScanThreshold;
+	}
 
-		/**
-		 * Checks if two agentEvents are the same by checking their ids.
-		 * 
-		 * @param a1 The first agent event
-		 * @param a2 The second agent event
-		 * @return returns 0 if the two agent events are the same, 1 if the id of
-		 * the first agent event is bigger than the id of the second agent event,
-		 * -1 otherwise
-		 */
-		public int compare(AgentEvent a1, AgentEvent a2) {
-			if (a1.id == a2.id)
-				return 0;
-			else if (a1.id > a2.id)
-				return 1;
-			else
-				return -1;
-		}
+	/**
+	 * Sets the number of empty agents from which on the ScanMatcher scans all empty agents in parallel.
+	 * Must be called before configure.
+	 * 
+	 * @param matcherParallelThreshold the number of empty agents
+	 */
+	public void setMatcherParallelThreshold(int matcherParallelThreshold) {
+		this.matcherParallelThreshold = matcherParallelThreshold;
 	}
 
 	/**
-	 * Compares resource events
+	 * Sets the compiled map file. If the file is compiled from the map JSON file, the bounding polygon KML file
+	 * and the speed reduction given to configure, the map is loaded from it, and otherwise the map is created
+	 * and compiled into it. Must be called before configure.
+	 * 
+	 * @param compiledMapFile the compiled map file, or null to always create the map
 	 */
-	class ResourceEventComparator implements Comparator<ResourceEvent> {
-		/**
-		 * Checks if two resourceEvents are the same by checking their ids.
-		 * 
-		 * @param a1 The first resource event
-		 * @param a2 The second resource event
-		 * @return returns 0 if the two resource events are the same, 1 if the id of
-		 * the resource event is bigger than the id of the second resource event,
-		 * -1 otherwise
-		 */
-		public int compare(ResourceEvent a1, ResourceEvent a2) {
-			if (a1.id == a2.id)
-				return 0;
-			else if (a1.id > a2.id)
-				return 1;
-			else
-				return -1;
-		}
+	public void setCompiledMapFile(String compiledMapFile) {
+		this.compiledMapFile = compiledMapFile;
+	}
+
+	/**
+	 * Sets whether vertices that are closer than MapCreator.minimumDistance to each other are grouped together
+	 * when the map is created, which reduces the number of intersections. Must be called before configure.
+	 * 
+	 * @param groupVertices true to group vertices
+	 */
+	public void setGroupVertices(boolean groupVertices) {
+		this.groupVertices = groupVertices;
+	}
+
+	/**
+	 * Sets the time zone of the map, which converts the times of the resource dataset file. When it is set, the
+	 * time zone is not computed from the map, which saves seconds and hundreds of MB. Must be called before
+	 * configure.
+	 * 
+	 * @param zoneId the time zone of the map, or null to compute it from the map
+	 */
+	public void setZoneId(ZoneId zoneId) {
+		this.zoneId = zoneId;
+	}
+
+	/**
+	 * Sets the time between two batches of assignments. Must be called before configure.
+	 * 
+	 * @param batchWindow the batch window in seconds, or 0 to assign agents and resources as soon as 
+	 * they become available
+	 */
+	public void setBatchWindow(long batchWindow) {
+		this.batchWindow = batchWindow;
 	}
 
 	/**
@@ -396,34 +530,13 @@ public class Simulator {
 	}
 
 	/**
-	 * Gets the empty agents in the simulation
+	 * Gets the empty agents in the simulation. The empty agents are only changed by the simulation, which
+	 * keeps the matcher informed (see Matcher.onAgentEmpty and Matcher.onAgentAssigned).
 	 * 
-	 * @return {@code emptyAgents }
+	 * @return an unmodifiable view of {@code emptyAgents } sorted by id
 	 */
-	public TreeSet<AgentEvent> getEmptyAgents() {
-		return emptyAgents;
+	public SortedSet<AgentEvent> getEmptyAgents() {
+		return Collections.unmodifiableSortedSet(emptyAgents);
 	}
 
-	/**
-	 * Sets the empty agents in the simulation
-	 * 
-	 * @param emptyAgents The TreeSet of agent events to set.
-	 */
-	public void setEmptyAgents(TreeSet<AgentEvent> emptyAgents) {
-		this.emptyAgents = emptyAgents;
-	}
-
-	/**
-	 * Make an agent copy of locationOnRoad so that an agent cannot modify the attributes of the road.
-	 * 
-	 * @param locationOnRoad the location to make a copy for
-	 * @return an agent copy of the location 
-	 */
-	public LocationOnRoad agentCopy(LocationOnRoad locationOnRoad) {
-		Intersection from = mapForAgents.intersections().get(locationOnRoad.road.from.id);
-		Intersection to = mapForAgents.intersections().get(locationOnRoad.road.to.id);
-		Road roadAgentCopy = from.roadsMapFrom.get(to);
-		LocationOnRoad locationOnRoadAgentCopy = new LocationOnRoad(roadAgentCopy, locationOnRoad.travelTimeFromStartIntersection);
-		return locationOnRoadAgentCopy;
-	}
 }
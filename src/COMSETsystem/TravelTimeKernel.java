@@ -0,0 +1,59 @@
+package COMSETsystem;
+
+/**
+ * The TravelTimeKernel class computes the inner loop of a scan for the nearest agent: given for every candidate
+ * the row of the travel time table of the end intersection of its road and its travel time to that intersection,
+ * find the candidate whose travel time to a target intersection is the smallest.
+ *
+ * This class is the scalar implementation. When COMSET is run from the multi-release jar on JDK 17 or later
+ * with the jdk.incubator.vector module added (java --add-modules jdk.incubator.vector ...), the kernel
+ * returned by get() is VectorTravelTimeKernel, which computes the same result with vector instructions
+ * (see the java17 profile in pom.xml). Otherwise it is an instance of this class.
+ */
+public class TravelTimeKernel {
+
+	// The kernel to use
+	private static final TravelTimeKernel KERNEL = load();
+
+	private static TravelTimeKernel load() {
+		try {
+			return (TravelTimeKernel) Class.forName("COMSETsystem.VectorTravelTimeKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// The vector kernel is not compiled, or the vector module is not available.
+			return new TravelTimeKernel();
+		}
+	}
+
+	/**
+	 * @return the fastest kernel that is available
+	 */
+	public static TravelTimeKernel get() {
+		return KERNEL;
+	}
+
+	/**
+	 * Find the candidate i in [from, to) with the smallest travelTimesToEnd[i] + travelTimeTable[rowOffsets[i] +
+	 * target], which is its travel time to the target intersection. Ties are broken by the smallest i.
+	 *
+	 * @param travelTimeTable the travel time table (see CityMap.travelTimeTable())
+	 * @param target the pathTableIndex of the target intersection
+	 * @param rowOffsets for each candidate, the pathTableIndex of the end intersection of its road times the
+	 * number of intersections
+	 * @param travelTimesToEnd for each candidate, the travel time to the end intersection of its road
+	 * @param from the first candidate
+	 * @param to one past the last candidate
+	 * @return the candidate, or -1 if from == to
+	 */
+	public int argmin(int[] travelTimeTable, int target, int[] rowOffsets, int[] travelTimesToEnd, int from, int to) {
+		int best = -1;
+		long bestTravelTime = Long.MAX_VALUE;
+		for (int i = from; i < to; i++) {
+			long travelTime = (long) travelTimesToEnd[i] + travelTimeTable[rowOffsets[i] + target];
+			if (travelTime < bestTravelTime) {
+				bestTravelTime = travelTime;
+				best = i;
+			}
+		}
+		return best;
+	}
+}
@@ -12,22 +12,27 @@ public class Vertex implements Comparable<Vertex> {
 
 	final public double longitude, latitude;
 	
-	// projected 2D coordinates
-	final public Point2D xy;
+	// projected 2D coordinates; a Point2D could be changed by an agent, so only copies are handed out (see getXY)
+	private final double x, y;
 	
 	// a unique id
-	public long id;
+	final public long id;
 	
-	// reference to the intersection at this vertex; null if this vertex is not an intersection
-	public Intersection intersection; 
+	// reference to the intersection at this vertex; null if this vertex is not an intersection; set by the Intersection
+	Intersection intersection; 
 
 	// The links that end at this vertex, i.e., the links for which this vertex is
 	// the downstream vertex, also called incoming roads.
-	public Map<Vertex, Link> linksMapTo = new TreeMap<>();
+	private final TreeMap<Vertex, Link> linksTo = new TreeMap<>();
+	final public Map<Vertex, Link> linksMapTo = Collections.unmodifiableMap(linksTo);
 
 	// The links that start at this vertex, i.e., the links for which this vertex is
 	// the upstream vertex, also called outgoing links.
-	public Map<Vertex, Link> linksMapFrom = new TreeMap<>();
+	private final TreeMap<Vertex, Link> linksFrom = new TreeMap<>();
+	final public Map<Vertex, Link> linksMapFrom = Collections.unmodifiableMap(linksFrom);
+
+	// Whether the vertex is part of a CityMap, after which its links cannot be changed anymore
+	boolean sealed = false;
 
 	/**
 	 * Constructor of Vertex. Set the location (longitude and latitude)
@@ -43,21 +48,11 @@ public class Vertex implements Comparable<Vertex> {
 		this.longitude = longitude;
 		this.latitude = latitude;
 		this.id = id;
-		this.xy = new Point2D.Double(x, y);
+		this.x = x;
+		this.y = y;
 		intersection = null; // a vertex has no intersection reference until promoted
 	}
 	
-	/**
-	 * Constructing from an existing vertex
-	 * @param aVertex
-	 */
-	public Vertex(Vertex aVertex) {
-		this.longitude = aVertex.longitude;
-		this.latitude = aVertex.latitude;
-		this.id = aVertex.id;
-		this.xy = new Point2D.Double(aVertex.getX(), aVertex.getY());
-	}
-
 	/**
 	 * Adds an edge () from this vertex to a specified vertex 
 	 * with a specified distance and speed limit.
@@ -71,9 +66,11 @@ public class Vertex implements Comparable<Vertex> {
 		if (this.id == i.id) {
 			return;
 		}
+		checkNotSealed();
+		i.checkNotSealed();
 		Link r = new Link(this, i, distance, speed);
-		linksMapFrom.put(i, r);
-		i.linksMapTo.put(this, r);
+		linksFrom.put(i, r);
+		i.linksTo.put(this, r);
 	}
 
 	/**
@@ -85,10 +82,12 @@ public class Vertex implements Comparable<Vertex> {
 	 *          vertex and the specified vertex
 	 */
 	public void removeEdge (Vertex inter) throws IllegalArgumentException {
-		for (Vertex i : linksMapFrom.keySet()) {
+		checkNotSealed();
+		for (Vertex i : linksFrom.keySet()) {
 			if (i.equals(inter)) {
-				linksMapFrom.remove(i);
-				i.linksMapTo.remove(this);
+				i.checkNotSealed();
+				linksFrom.remove(i);
+				i.linksTo.remove(this);
 				return;
 			}
 		}
@@ -136,6 +135,15 @@ public class Vertex implements Comparable<Vertex> {
 		} 
 	}
 
+	/*
+	 * Throw an IllegalStateException if the vertex is part of a CityMap.
+	 */
+	private void checkNotSealed() {
+		if (sealed) {
+			throw new IllegalStateException("The links of a vertex of a CityMap cannot be changed");
+		}
+	}
+
 	/**
 	 * Checks if this vertex and the specified vertex are neighbors,
 	 * i.e. if there is a  from this to the other or from the other to this.
@@ -223,7 +231,7 @@ public class Vertex implements Comparable<Vertex> {
 	 * @return distance between this vertex and specified vertex
 	 */
 	public double distanceTo(Vertex vertex) {
-		return this.xy.distance(vertex.xy);
+		return Point2D.distance(x, y, vertex.x, vertex.y);
 	}
 
 	/**
@@ -231,7 +239,7 @@ public class Vertex implements Comparable<Vertex> {
 	 * @return x-coordinate
 	 */
 	public double getX() {
-		return this.xy.getX();
+		return this.x;
 	}
 
 	/**
@@ -239,7 +247,15 @@ public class Vertex implements Comparable<Vertex> {
 	 * @return y-coordinate
 	 */
 	public double getY() {
-		return this.xy.getY();
+		return this.y;
+	}
+
+	/**
+	 * returns the projected coordinates of this vertex
+	 * @return a new point at the x- and y-coordinate, which can be changed without changing this vertex
+	 */
+	public Point2D getXY() {
+		return new Point2D.Double(x, y);
 	}
 
 	/**
@@ -250,6 +266,13 @@ public class Vertex implements Comparable<Vertex> {
 		return "(" + latitude + "," + longitude + ")";
 	}
 
+	/**
+	 * @return the intersection at this vertex, or null if this vertex is not an intersection
+	 */
+	public Intersection getIntersection() {
+		return intersection;
+	}
+
 	/**
 	 * checks whether this is the same vertex as some specified vertex
 	 * 
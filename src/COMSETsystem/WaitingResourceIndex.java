@@ -0,0 +1,137 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * The WaitingResourceIndex class is a spatial index of the waiting resources that is used to find the waiting
+ * resource that an agent can reach the earliest before the resource expires, without computing the travel time
+ * to every waiting resource.
+ *
+ * Every waiting resource is kept in the IntersectionGrid cell of the start intersection of its pickup road.
+ * Within a cell the resources are ordered by expiration time (and by id to break ties), so that the resources
+ * that expire before the agent can possibly reach the cell are skipped without computing their travel time,
+ * and a resource is removed in O(log n) when it expires or is picked up.
+ *
+ * The cells are searched in rings outward from the agent until the lower bound of the arrival time at the next
+ * ring exceeds the best arrival time found so far. The resources on the agent's own road may be reached without
+ * passing any intersection; their cell is always searched first. The result is the same resource as the one
+ * found by checking every waiting resource in id order.
+ */
+public class WaitingResourceIndex {
+
+	// Orders resources by expiration time, and then by id.
+	private static final Comparator<ResourceEvent> EXPIRATION_ORDER = new Comparator<ResourceEvent>() {
+		public int compare(ResourceEvent r1, ResourceEvent r2) {
+			if (r1.expirationTime != r2.expirationTime)
+				return r1.expirationTime < r2.expirationTime ? -1 : 1;
+			else if (r1.id != r2.id)
+				return r1.id < r2.id ? -1 : 1;
+			else
+				return 0;
+		}
+	};
+
+	// The map that the resources are on
+	private final CityMap map;
+
+	// The cells in which the resources are kept
+	private final IntersectionGrid grid;
+
+	// The waiting resources of each cell
+	private final ArrayList<TreeSet<ResourceEvent>> resourcesOfCell;
+
+	/**
+	 * Constructor of WaitingResourceIndex.
+	 *
+	 * @param map the map that the resources are on
+	 * @param grid the cells in which the resources are grouped
+	 */
+	public WaitingResourceIndex(CityMap map, IntersectionGrid grid) {
+		this.map = map;
+		this.grid = grid;
+		resourcesOfCell = new ArrayList<>(grid.cellCount());
+		for (int i = 0; i < grid.cellCount(); i++) {
+			resourcesOfCell.add(new TreeSet<ResourceEvent>(EXPIRATION_ORDER));
+		}
+	}
+
+	/**
+	 * Add a waiting resource to the index.
+	 *
+	 * @param resource the resource
+	 */
+	public void add(ResourceEvent resource) {
+		resourcesOfCell.get(grid.cellOf(resource.pickupLoc.road.from)).add(resource);
+	}
+
+	/**
+	 * Remove a resource from the index when it expires or is picked up. Nothing happens if the
+	 * resource is not indexed.
+	 *
+	 * @param resource the resource
+	 */
+	public void remove(ResourceEvent resource) {
+		resourcesOfCell.get(grid.cellOf(resource.pickupLoc.road.from)).remove(resource);
+	}
+
+	/**
+	 * Find the waiting resource that can be reached the earliest from a location, provided that it can be
+	 * reached before it expires. Ties are broken by the smallest resource id.
+	 *
+	 * @param source the location to depart from
+	 * @param currentTime the current simulation time
+	 * @return the resource, or null if no waiting resource can be reached before it expires
+	 */
+	public ResourceEvent nearest(LocationOnRoad source, long currentTime) {
+		ResourceEvent bestResource = null;
+		long earliest = Long.MAX_VALUE;
+
+		// The resources on the source road may be reached directly, so search their cell completely.
+		int sourceRoadCell = grid.cellOf(source.road.from);
+		for (ResourceEvent resource : resourcesOfCell.get(sourceRoadCell)) {
+			long arriveTime = currentTime + map.travelTimeBetween(source, resource.pickupLoc);
+			if (arriveTime <= resource.expirationTime && (arriveTime < earliest || (arriveTime == earliest && resource.id < bestResource.id))) {
+				bestResource = resource;
+				earliest = arriveTime;
+			}
+		}
+
+		// Any other resource is reached through the end intersection of the source road.
+		Intersection origin = source.road.to;
+		long earliestAtOrigin = currentTime + source.road.travelTime - source.travelTimeFromStartIntersection;
+		int originCell = grid.cellOf(origin);
+		for (int ring = 0; ring <= grid.maxRing(); ring++) {
+			if (earliestAtOrigin + grid.ringLowerBound(ring) > earliest) {
+				break;
+			}
+			for (int i = 0; i < grid.ringSize(ring); i++) {
+				int cell = grid.cellInRing(originCell, ring, i);
+				if (cell < 0 || cell == sourceRoadCell || resourcesOfCell.get(cell).isEmpty()) {
+					continue;
+				}
+				long earliestAtCell = earliestAtOrigin + grid.cellLowerBound(origin, cell);
+				if (earliestAtCell > earliest) {
+					continue;
+				}
+				// Visit the resources from the latest to expire, and stop at those that expire before the agent
+				// can reach the cell.
+				Iterator<ResourceEvent> iterator = resourcesOfCell.get(cell).descendingIterator();
+				while (iterator.hasNext()) {
+					ResourceEvent resource = iterator.next();
+					if (resource.expirationTime < earliestAtCell) {
+						break;
+					}
+					long arriveTime = currentTime + map.travelTimeBetween(source, resource.pickupLoc);
+					if (arriveTime <= resource.expirationTime && (arriveTime < earliest || (arriveTime == earliest && resource.id < bestResource.id))) {
+						bestResource = resource;
+						earliest = arriveTime;
+					}
+				}
+			}
+		}
+		return bestResource;
+	}
+}
@@ -34,6 +34,20 @@ public class GeoProjector {
 		metersPerLonDegree = distanceGreatCircle(ref_lat, ref_lon, ref_lat, ref_lon + 1.0);
 	}
 
+	/**
+	 * @return latitude of the reference location
+	 */
+	public double getRefLat() {
+		return ref_lat;
+	}
+
+	/**
+	 * @return longitude of the reference location
+	 */
+	public double getRefLon() {
+		return ref_lon;
+	}
+
 	/**
 	 * Project a lat,lon location to 2D space
 	 * @param lat latitude 
@@ -104,8 +104,8 @@ public class MapWithData {
 		double [] snapResult = snap(link.from.getX(), link.from.getY(), link.to.getX(), link.to.getY(), xy[0], xy[1]);
 		double distanceFromStartVertex = this.distance(snapResult[0], snapResult[1], link.from.getX(), link.from.getY());
 		long travelTimeFromStartVertex = Math.round(distanceFromStartVertex / link.length * link.travelTime);
-		long travelTimeFromStartIntersection = link.beginTime + travelTimeFromStartVertex;
-		return new LocationOnRoad(link.road, travelTimeFromStartIntersection);		
+		long travelTimeFromStartIntersection = link.getBeginTime() + travelTimeFromStartVertex;
+		return new LocationOnRoad(link.getRoad(), travelTimeFromStartIntersection);		
 	}
 
 	/**
@@ -173,7 +173,7 @@ public class MapWithData {
 
 		Random generator = new Random(agentPlacementRandomSeed);
 		for (int i = 0; i < simulator.totalAgents(); i++) {
-			Road road = map.roads().get(generator.nextInt(map.roads().size()));
+			Road road = map.roadAt(generator.nextInt(map.roadCount()));
             long travelTimeFromStartIntersection;
             if (road.travelTime != 0) {
                 travelTimeFromStartIntersection = (long) (generator.nextInt((int) road.travelTime));
@@ -1,7 +1,9 @@
 import COMSETsystem.BaseAgent;
+import COMSETsystem.Matcher;
 import COMSETsystem.Simulator;
 
 import java.io.IOException;
+import java.time.ZoneId;
 import java.util.logging.LogManager;
 import java.util.Random;
 import java.util.Properties;
@@ -89,8 +91,56 @@ public class Main {
     			agentPlacementSeed = random.nextLong();
             }
             
+            String matcherClassName = prop.getProperty("comset.matcher_class");
+            
+            int matcherScanThreshold = -1;
+            String matcherScanThresholdArg = prop.getProperty("comset.matcher_scan_threshold");
+            if (matcherScanThresholdArg != null) {
+            	matcherScanThreshold = Integer.parseInt(matcherScanThresholdArg.trim());
+            }
+            
+            int matcherParallelThreshold = -1;
+            String matcherParallelThresholdArg = prop.getProperty("comset.matcher_parallel_threshold");
+            if (matcherParallelThresholdArg != null) {
+            	matcherParallelThreshold = Integer.parseInt(matcherParallelThresholdArg.trim());
+            }
+            
+            long batchWindow = 0;
+            String batchWindowArg = prop.getProperty("comset.batch_window");
+            if (batchWindowArg != null) {
+            	batchWindow = Long.parseLong(batchWindowArg.trim());
+            }
+            
+            String compiledMapFile = prop.getProperty("comset.compiled_map_file");
+            if (compiledMapFile != null) {
+            	compiledMapFile = compiledMapFile.trim();
+            }
+            
+            boolean groupVertices = false;
+            String groupVerticesArg = prop.getProperty("comset.group_vertices");
+            if (groupVerticesArg != null) {
+            	groupVertices = Boolean.parseBoolean(groupVerticesArg.trim());
+            }
+            
+            ZoneId zoneId = null;
+            String zoneIdArg = prop.getProperty("comset.time_zone");
+            if (zoneIdArg != null) {
+            	zoneId = ZoneId.of(zoneIdArg.trim());
+            }
+            
             Class<?> agentClass = Class.forName(agentClassName);
 			Simulator simulator = new Simulator((Class<? extends BaseAgent>)agentClass);
+			if (matcherClassName != null) {
+				simulator.setMatcherClass(Class.forName(matcherClassName.trim()).asSubclass(Matcher.class));
+			}
+			simulator.setMatcherScanThreshold(matcherScanThreshold);
+			if (matcherParallelThreshold >= 0) {
+				simulator.setMatcherParallelThreshold(matcherParallelThreshold);
+			}
+			simulator.setBatchWindow(batchWindow);
+			simulator.setCompiledMapFile(compiledMapFile);
+			simulator.setGroupVertices(groupVertices);
+			simulator.setZoneId(zoneId);
 
 			if (!displayLogging) {
 				LogManager.getLogManager().reset();
@@ -0,0 +1,288 @@
+package MapCreation;
+
+import COMSETsystem.*;
+import DataParsing.GeoProjector;
+import DataParsing.KdTree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * The CompiledMap class saves the map created by a MapCreator into a binary file, and loads it again. Creating
+ * the map from the JSON file, i.e., parsing, cropping, clearing and creating the intersections and the roads,
+ * only depends on the JSON file, the KML file, the speed reduction and whether vertices are grouped, so it only
+ * needs to be done once for them. Loading is not free either: it maps the file into memory, checks its
+ * checksum, and then creates every vertex, link, road and intersection again and builds the KdTree, i.e., it
+ * saves the parsing and the map creation steps but not the creation of the objects of the map. Loading does
+ * not read the bounding polygon; the simulator sets it for map matching (see MapCreator.setBoundingPolygon).
+ *
+ * The file starts with a header of a magic number, the format version, the sizes and modification times of the
+ * JSON file and the KML file, the speed reduction, whether vertices are grouped, and the length and CRC32
+ * checksum of the payload. The sizes and modification times only serve as a cache key: a JSON file or KML file
+ * that is changed without changing its size or modification time is not noticed, and the compiled map file
+ * must then be deleted. The checksum only guards the payload against a corrupt file. The payload holds the
+ * reference location of the projector, the time zone ID, the vertices in id order, the links in id order, the
+ * intersections, and the roads in id order with the indices of their links. The roads include those that a
+ * later road between the same two intersections replaced in the roads of the intersections, as their links are
+ * still matched to them. Since the links and the roads are created in id order when they are loaded, a loaded
+ * map orders them the same way as the created map, and the simulation runs the same. The KdTree for map
+ * matching is built again from the links.
+ */
+public class CompiledMap {
+
+	// "COMSETMP" as a number
+	private static final long MAGIC = 0x434F4D5345544D50L;
+
+	// The version of the format; a file of another version is created again
+	private static final int VERSION = 3;
+
+	// The size of the header in bytes
+	private static final int HEADER_SIZE = 8 + 4 + 4 * 8 + 8 + 1 + 4 + 8;
+
+	/**
+	 * Save the map created by a map creator into a compiled map file.
+	 *
+	 * @param creator the map creator, which has created its map
+	 * @param compiledMapFile the compiled map file to write
+	 * @param mapJSONFile the JSON file the map is created from
+	 * @param boundingPolygonKMLFile the KML file the map is cropped with
+	 * @param speedReduction the speed reduction the map is created with
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(MapCreator creator, String compiledMapFile, String mapJSONFile, String boundingPolygonKMLFile, double speedReduction) throws IOException {
+		CityMap map = creator.outputCityMap();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+
+		payload.writeDouble(map.projector().getRefLat());
+		payload.writeDouble(map.projector().getRefLon());
+		byte[] zoneId = map.computeZoneId().getId().getBytes(StandardCharsets.UTF_8);
+		payload.writeInt(zoneId.length);
+		payload.write(zoneId);
+
+		// vertices in id order
+		Map<Vertex, Integer> vertexIndex = new HashMap<>();
+		payload.writeInt(creator.vertices.size());
+		List<Link> links = new ArrayList<>();
+		for (Vertex vertex : creator.vertices.values()) {
+			vertexIndex.put(vertex, vertexIndex.size());
+			payload.writeLong(vertex.id);
+			payload.writeDouble(vertex.longitude);
+			payload.writeDouble(vertex.latitude);
+			payload.writeDouble(vertex.getX());
+			payload.writeDouble(vertex.getY());
+			links.addAll(vertex.linksMapFrom.values());
+		}
+
+		// links in id order
+		links.sort(null);
+		Map<Link, Integer> linkIndex = new HashMap<>();
+		payload.writeInt(links.size());
+		for (Link link : links) {
+			linkIndex.put(link, linkIndex.size());
+			payload.writeInt(vertexIndex.get(link.from));
+			payload.writeInt(vertexIndex.get(link.to));
+			payload.writeDouble(link.length);
+			payload.writeDouble(link.speed);
+		}
+
+		// intersections in id order
+		payload.writeInt(map.intersectionCount());
+		for (int i = 0; i < map.intersectionCount(); i++) {
+			payload.writeInt(vertexIndex.get(map.intersectionAt(i).vertex));
+		}
+
+		// roads in id order, including the roads that are not in map.roads() because a later road between the
+		// same intersections replaced them, as map matching may still put resources on their links
+		Set<Road> roads = new TreeSet<>();
+		for (Link link : links) {
+			if (link.getRoad() != null) {
+				roads.add(link.getRoad());
+			}
+		}
+		payload.writeInt(roads.size());
+		for (Road road : roads) {
+			payload.writeInt(road.from.getPathTableIndex());
+			payload.writeInt(road.to.getPathTableIndex());
+			payload.writeInt(road.links.size());
+			for (Link link : road.links) {
+				payload.writeInt(linkIndex.get(link));
+			}
+		}
+		payload.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+
+		try (OutputStream out = new FileOutputStream(compiledMapFile)) {
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeLong(MAGIC);
+			header.writeInt(VERSION);
+			writeFingerprint(header, mapJSONFile, boundingPolygonKMLFile, speedReduction, creator.groupVertices);
+			header.writeInt(bytes.size());
+			header.writeLong(crc.getValue());
+			bytes.writeTo(header);
+			header.flush();
+		}
+	}
+
+	/**
+	 * Load a map from a compiled map file, provided the file is compiled from the given JSON file, KML file and
+	 * settings. Whether the files are the same is judged by their sizes and modification times only.
+	 *
+	 * @param compiledMapFile the compiled map file to read
+	 * @param mapJSONFile the JSON file the map must be created from
+	 * @param boundingPolygonKMLFile the KML file the map must be cropped with
+	 * @param speedReduction the speed reduction the map must be created with
+	 * @param groupVertices whether the vertices of the map must be grouped
+	 * @return the map, or null if the file does not exist, is of another version, is compiled from other
+	 * files or settings, or is corrupt
+	 */
+	public static CityMap load(String compiledMapFile, String mapJSONFile, String boundingPolygonKMLFile, double speedReduction, boolean groupVertices) {
+		if (!new File(compiledMapFile).isFile()) {
+			return null;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(compiledMapFile, "r"); FileChannel channel = file.getChannel()) {
+			if (channel.size() < HEADER_SIZE) {
+				System.out.println("The compiled map file " + compiledMapFile + " is corrupt.");
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			// check the header
+			if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+				System.out.println("The compiled map file " + compiledMapFile + " is of another version.");
+				return null;
+			}
+			ByteBuffer fingerprint = ByteBuffer.allocate(4 * 8 + 8 + 1);
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			writeFingerprint(new DataOutputStream(expected), mapJSONFile, boundingPolygonKMLFile, speedReduction, groupVertices);
+			buffer.get(fingerprint.array());
+			if (!Arrays.equals(fingerprint.array(), expected.toByteArray())) {
+				System.out.println("The compiled map file " + compiledMapFile + " is compiled from other map files or settings.");
+				return null;
+			}
+			int payloadLength = buffer.getInt();
+			long checksum = buffer.getLong();
+			if (payloadLength != channel.size() - HEADER_SIZE) {
+				System.out.println("The compiled map file " + compiledMapFile + " is corrupt.");
+				return null;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.duplicate());
+			if (crc.getValue() != checksum) {
+				System.out.println("The compiled map file " + compiledMapFile + " is corrupt.");
+				return null;
+			}
+
+			return readPayload(buffer);
+		} catch (IOException e) {
+			System.out.println("error IOException");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/*
+	 * Create the map from the payload of a compiled map file.
+	 */
+	private static CityMap readPayload(ByteBuffer buffer) {
+		GeoProjector projector = new GeoProjector(buffer.getDouble(), buffer.getDouble());
+		byte[] zoneId = new byte[buffer.getInt()];
+		buffer.get(zoneId);
+
+		// vertices in id order
+		Vertex[] vertices = new Vertex[buffer.getInt()];
+		for (int i = 0; i < vertices.length; i++) {
+			long id = buffer.getLong();
+			double longitude = buffer.getDouble();
+			double latitude = buffer.getDouble();
+			double x = buffer.getDouble();
+			double y = buffer.getDouble();
+			vertices[i] = new Vertex(longitude, latitude, x, y, id);
+		}
+
+		// links in id order
+		Link[] links = new Link[buffer.getInt()];
+		for (int i = 0; i < links.length; i++) {
+			Vertex from = vertices[buffer.getInt()];
+			Vertex to = vertices[buffer.getInt()];
+			double length = buffer.getDouble();
+			double speed = buffer.getDouble();
+			from.addEdge(to, length, speed);
+			links[i] = from.linksMapFrom.get(to);
+		}
+
+		// intersections in id order
+		Map<Long, Intersection> intersections = new TreeMap<>();
+		Intersection[] intersectionsByIndex = new Intersection[buffer.getInt()];
+		for (int i = 0; i < intersectionsByIndex.length; i++) {
+			Vertex vertex = vertices[buffer.getInt()];
+			Intersection intersection = new Intersection(vertex);
+			intersections.put(intersection.id, intersection);
+			intersectionsByIndex[i] = intersection;
+		}
+
+		// roads in id order
+		int roadCount = buffer.getInt();
+		for (int i = 0; i < roadCount; i++) {
+			Intersection from = intersectionsByIndex[buffer.getInt()];
+			Intersection to = intersectionsByIndex[buffer.getInt()];
+			Link[] roadLinks = new Link[buffer.getInt()];
+			for (int j = 0; j < roadLinks.length; j++) {
+				roadLinks[j] = links[buffer.getInt()];
+			}
+			new Road(from, to, Arrays.asList(roadLinks));
+		}
+
+		// as in MapCreator.outputCityMap
+		KdTree kdTree = new KdTree();
+		for (Vertex vertex : vertices) {
+			for (Link link : vertex.getLinksFrom()) {
+				kdTree.insert(link);
+			}
+		}
+		List<Road> roads = new ArrayList<>();
+		for (Intersection intersection : intersections.values()) {
+			roads.addAll(intersection.getRoadsFrom());
+		}
+
+		return new CityMap(intersections, roads, projector, kdTree, ZoneId.of(new String(zoneId, StandardCharsets.UTF_8)));
+	}
+
+	/*
+	 * The files and the settings a map is created from, as a cache key: the files by their sizes and modification
+	 * times, not by their contents.
+	 */
+	private static void writeFingerprint(DataOutputStream out, String mapJSONFile, String boundingPolygonKMLFile, double speedReduction, boolean groupVertices) throws IOException {
+		File map = new File(mapJSONFile);
+		File kml = new File(boundingPolygonKMLFile);
+		out.writeLong(map.length());
+		out.writeLong(map.lastModified());
+		out.writeLong(kml.length());
+		out.writeLong(kml.lastModified());
+		out.writeDouble(speedReduction);
+		out.writeBoolean(groupVertices);
+		out.flush();
+	}
+}
@@ -0,0 +1,133 @@
+package MapCreation;
+
+import java.util.Arrays;
+
+/**
+ * The LongIntMap class maps long keys, e.g., OSM node ids or vertex ids, to non-negative int values, e.g., indices
+ * into arrays. It keeps the keys and values in two primitive arrays with open addressing and linear probing, so
+ * it takes a small fraction of the memory and time of a map of boxed keys and values, which matters for map files
+ * with millions of nodes. Keys cannot be removed.
+ */
+class LongIntMap {
+
+	// The value of an empty slot
+	private static final int EMPTY = -1;
+
+	// The keys and the values of the slots; the number of slots is a power of two
+	private long[] keys;
+	private int[] values;
+
+	// The number of keys
+	private int size = 0;
+
+	/**
+	 * Constructor of LongIntMap.
+	 *
+	 * @param expectedSize the number of keys the map is expected to hold; more keys may be put
+	 */
+	LongIntMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < 2L * expectedSize) {
+			capacity *= 2;
+		}
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, EMPTY);
+	}
+
+	/**
+	 * The value of a key.
+	 *
+	 * @param key the key
+	 * @return the value of the key, or -1 if the map does not hold the key
+	 */
+	int get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = hash(key) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return EMPTY;
+	}
+
+	/**
+	 * Check if the map holds a key.
+	 *
+	 * @param key the key
+	 * @return true if the map holds the key
+	 */
+	boolean containsKey(long key) {
+		return get(key) != EMPTY;
+	}
+
+	/**
+	 * Set the value of a key, replacing its previous value if it has one.
+	 *
+	 * @param key the key
+	 * @param value the value, which must not be negative
+	 */
+	void put(long key, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("negative value " + value);
+		}
+		if (2 * (size + 1) > keys.length) {
+			grow();
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (values[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	/**
+	 * The number of keys in the map.
+	 *
+	 * @return the number of keys
+	 */
+	int size() {
+		return size;
+	}
+
+	/*
+	 * Double the number of slots.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[2 * oldKeys.length];
+		values = new int[2 * oldValues.length];
+		Arrays.fill(values, EMPTY);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != EMPTY) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (values[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/*
+	 * Spread the bits of a key, as ids are often consecutive (the finalizer of MurmurHash3).
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -11,15 +11,14 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.io.IOException;
 import java.util.Map;
+import java.util.stream.IntStream;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -71,6 +70,9 @@ public class MapCreator {
 	// Distance in meters used to group vertices together if they're too close
 	final double minimumDistance = 25;
 
+	// Whether to group vertices together that are closer than minimumDistance (see groupVertices)
+	boolean groupVertices = false;
+
 	// Map from id's to intersections. This represents the map.
 	Map<Long, Intersection> intersections;
 
@@ -83,16 +85,24 @@ public class MapCreator {
 	// Used to project from lat,lon to x,y in meters
 	GeoProjector projector;
 
+	// The map once it is output. The intersections and roads of a map cannot be changed, so they cannot
+	// be output into a second map.
+	CityMap cityMap;
+
 	// The bounding polygon for cropping the map.
 	// Created from boundingPolygonKMLFile
 	static List<double[]> boundingPolygon;
 
+	// The bounding polygon prepared for insidePolygon
+	private static volatile PreparedPolygon preparedPolygon;
+
 	/**
 	 * Constructor of the MapCreator class. Reads the JSON file defined by fileName and
 	 * converts it into a map represented by { @code vertices ).
-	 * Uses Json.simple package
+	 * Uses Json.simple package. A file name ending with .pbf is read as an OSM PBF file
+	 * instead (see OSMPBFReader).
 	 *
-	 * @param fileName the JSON file that will be read
+	 * @param fileName the JSON or PBF file that will be read
 	 * @param boundingPolygonKMLFile a KML file defining a bounding polygon of the simulated area
 	 * modifies {@code vertices }
 	 *
@@ -107,122 +117,28 @@ public class MapCreator {
 		// Initialize vertices to be a TreeMap.
 		vertices = new TreeMap<>(); 
 
-		JSONParser parser = new JSONParser();
+		OSMNodes nodes = new OSMNodes();
 		try {
-			// read file
-			Reader reader = new FileReader(mapFile);
-			// create JSONObject based on the file
-			Object obj = parser.parse(reader);
-			JSONObject jsonObject = (JSONObject) obj;
-
-			// loop over all the elements in the JSON file to set all the vertices
-			JSONArray elements = (JSONArray) jsonObject.get("elements");
-			boolean firstVertex = true;
-			for (Object elementObject : elements) {
-				JSONObject element = (JSONObject) elementObject;
-				String type = (String) element.get("type");
-				// if the type is a vertex, then create an Vertex
-				if (type.equals("node")) {
-					long id = (long) element.get("id");
-					double latitude = (double) element.get("lat");
-					double longitude = (double) element.get("lon");
-					if (firstVertex) {
-						this.projector = new GeoProjector(latitude, longitude);
-						firstVertex = false;
-					}
-					double xy[] = projector.fromLatLon(latitude, longitude);
-					vertices.put(id, new Vertex(longitude, latitude, xy[0], xy[1], id));
+			OSMWays ways;
+			if (mapFile.endsWith(".pbf")) {
+				// read the PBF file, which buffers the nodes that the ways go through and the ways
+				OSMPBFReader pbfReader = new OSMPBFReader();
+				ways = pbfReader.read(mapFile);
+				nodes = pbfReader.nodes;
+			} else {
+				// read the JSON file in a single pass, which buffers the nodes and the ways
+				try (Reader reader = new BufferedReader(new FileReader(mapFile))) {
+					OSMJSONHandler handler = new OSMJSONHandler();
+					new JSONParser().parse(reader, handler);
+					nodes = handler.nodes;
+					ways = handler.ways;
 				}
 			}
 
-			// loop over all the elements again to set the roads
-			for (Object elementObject : elements) {
-				JSONObject element = (JSONObject) elementObject;
-				String type = (String) element.get("type");
-				if (type.equals("way")) { // check if it's a road
-					String highway;
-					double maxSpeed; // speed limit in km/h
-					boolean oneway = false;
-					Object tagsObject = element.get("tags");
-					JSONObject tags = (JSONObject) tagsObject;
-					highway = (String)tags.get("highway");
-					// set speed limit
-					if (tags.containsKey("maxspeed")) {
-						String speedString = (String) tags.get("maxspeed");
-						if( speedString.contains(" mph")) {
-							speedString = speedString.replace(" mph", "");
-							maxSpeed = Integer.parseInt(speedString) * kilometersPerMile; // convert from mph to kmph
-						} else {
-							// default unit is km/h
-							maxSpeed = Integer.parseInt(speedString);
-						}
-					} else {
-						switch(highway) {
-						case "motorway":
-							maxSpeed = speedMotorway;
-							break;
-						case "motorway_link":
-							maxSpeed = speedMotorwayLink;
-							break;
-						case "trunk":
-							maxSpeed = speedTrunk;
-							break;
-						case "trunk_link":
-							maxSpeed = speedTrunkLink;
-							break;
-						case "primary":
-							maxSpeed = speedPrimary;
-							break;
-						case "primary_link":
-							maxSpeed = speedPrimaryLink;
-							break;
-						case "secondary":
-							maxSpeed = speedSecondary;
-							break;
-						case "secondary_link":
-							maxSpeed = speedSecondaryLink;
-							break;
-						case "tertiary":
-							maxSpeed = speedTertiary;
-							break;
-						case "tertiary_link":
-							maxSpeed = speedTertiaryLink;
-							break;
-						case "unclassified":
-							maxSpeed = speedUnclassified;
-							break;
-						case "residential":
-							maxSpeed = speedResidential;
-							break;
-						case "living_street":
-							maxSpeed = speedLivingStreet;
-							break;
-						default:
-							maxSpeed = speedDefault;
-							break;
-						}
-					}
-					// check if it's a one way street
-					if(tags.containsKey("oneway") && ((String)tags.get("oneway")).equals("yes")) {
-						oneway = true;
-					}
-					// set roads
-					JSONArray jsonvertices = (JSONArray) element.get("nodes");
-					int length = jsonvertices.size();
-					for (int i = 0; i < length - 1; i++) {
-						long id1 = (long)jsonvertices.get(i);
-						long id2 = (long)jsonvertices.get(i+1);
-
-						double distance = vertices.get(id1).xy.distance(vertices.get(id2).xy);
-
-						// Convert km/h to meters per second; apply speed reduction
-						vertices.get(id1).addEdge(vertices.get(id2), distance, maxSpeed * 1000 / 3600 / speedReduction);
-						if (!oneway) {
-							vertices.get(id2).addEdge(vertices.get(id1), distance, maxSpeed * 1000 / 3600 / speedReduction);
-						}
-					}
-				}
-			}
+			// set the vertices from the buffered nodes, and loop over the buffered ways to set the roads
+			LongIntMap nodeIndex = nodes.index();
+			Vertex[] nodeVertices = addVertices(nodes, nodeIndex, ways);
+			addLinks(ways, nodeIndex, nodeVertices, speedReduction);
 
 		// handle exceptions
 		} catch (FileNotFoundException e) {
@@ -236,7 +152,168 @@ public class MapCreator {
 			e.printStackTrace();
 		}
 		
-		setIdCounter();
+		setIdCounter(nodes);
+	}
+
+	/**
+	 * Add the nodes read from the map file that a way goes through and that are inside the bounding polygon
+	 * as vertices. The other nodes would be removed by cropMap or clearMap, so they are left out right away,
+	 * which saves most of the memory for map files that cover more than the bounding polygon. The first node
+	 * sets the origin of the projection. The nodes are tested and projected in parallel, and then added to
+	 * vertices in file order.
+	 *
+	 * @param nodes the nodes read from the map file
+	 * @param nodeIndex the index of each node by its id
+	 * @param ways the ways read from the map file
+	 * @return the vertex of each node, or null if the node is left out
+	 */
+	Vertex[] addVertices(OSMNodes nodes, LongIntMap nodeIndex, OSMWays ways) {
+		Vertex[] nodeVertices = new Vertex[nodes.count];
+		if (nodes.count == 0) {
+			return nodeVertices;
+		}
+		projector = new GeoProjector(nodes.latitudes[0], nodes.longitudes[0]);
+
+		// the polygon as cropMap closes it
+		List<double[]> closedPolygon = new ArrayList<>(boundingPolygon);
+		if (!boundingPolygon.isEmpty()) {
+			closedPolygon.add(boundingPolygon.get(0));
+		}
+		PreparedPolygon polygon = new PreparedPolygon(closedPolygon);
+
+		boolean[] used = new boolean[nodes.count];
+		for (int i = 0; i < ways.start[ways.count]; i++) {
+			int node = nodeIndex.get(ways.nodes[i]);
+			if (node >= 0) {
+				used[node] = true;
+			}
+		}
+		IntStream.range(0, nodes.count).parallel().forEach(node -> {
+			double latitude = nodes.latitudes[node];
+			double longitude = nodes.longitudes[node];
+			if (used[node] && polygon.contains(longitude, latitude)) {
+				double xy[] = projector.fromLatLon(latitude, longitude);
+				nodeVertices[node] = new Vertex(longitude, latitude, xy[0], xy[1], nodes.ids[node]);
+			}
+		});
+		for (int node = 0; node < nodes.count; node++) {
+			if (nodeVertices[node] != null) {
+				vertices.put(nodes.ids[node], nodeVertices[node]);
+			}
+		}
+		return nodeVertices;
+	}
+
+	/**
+	 * Add the links of the ways read from the map file between their vertices. The lengths of the
+	 * links are computed in parallel; the links are then added in file order, so that their ids
+	 * do not depend on the number of threads.
+	 *
+	 * @param ways the ways read from the map file
+	 * @param nodeIndex the index of each node by its id
+	 * @param nodeVertices the vertex of each node, or null
+	 * @param speedReduction the speed reduction to apply to the speed limits
+	 */
+	void addLinks(OSMWays ways, LongIntMap nodeIndex, Vertex[] nodeVertices, double speedReduction) {
+		// the vertex of each node of the ways, and the distance from it to the next node of the ways
+		int wayNodes = ways.start[ways.count];
+		Vertex[] wayVertices = new Vertex[wayNodes];
+		double[] distances = new double[wayNodes];
+		IntStream.range(0, wayNodes).parallel().forEach(i -> {
+			int node = nodeIndex.get(ways.nodes[i]);
+			wayVertices[i] = node < 0 ? null : nodeVertices[node];
+		});
+		IntStream.range(0, wayNodes - 1).parallel().forEach(i -> {
+			if (wayVertices[i] != null && wayVertices[i + 1] != null) {
+				distances[i] = wayVertices[i].distanceTo(wayVertices[i + 1]);
+			}
+		});
+
+		for (int way = 0; way < ways.count; way++) {
+			// Convert km/h to meters per second; apply speed reduction
+			double speed = ways.speed[way] * 1000 / 3600 / speedReduction;
+			boolean oneway = ways.oneway[way];
+			for (int i = ways.start[way]; i < ways.start[way + 1] - 1; i++) {
+				Vertex vertex1 = wayVertices[i];
+				Vertex vertex2 = wayVertices[i + 1];
+				if (vertex1 == null || vertex2 == null) {
+					// the node is not in the map file, e.g., because it is outside of an extract, or it is
+					// outside of the bounding polygon
+					continue;
+				}
+
+				double distance = distances[i];
+
+				vertex1.addEdge(vertex2, distance, speed);
+				if (!oneway) {
+					vertex2.addEdge(vertex1, distance, speed);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The speed limit of a way, which is its maxspeed tag if it has one that is a number and otherwise the
+	 * default speed limit of its highway tag.
+	 *
+	 * @param highway the highway tag of the way
+	 * @param speedString the maxspeed tag of the way, or null if it has none
+	 * @return the speed limit in km/h
+	 */
+	static double maxSpeed(String highway, String speedString) {
+		if (speedString != null) {
+			try {
+				if (speedString.contains(" mph")) {
+					speedString = speedString.replace(" mph", "");
+					return Integer.parseInt(speedString) * kilometersPerMile; // convert from mph to kmph
+				} else {
+					// default unit is km/h
+					return Integer.parseInt(speedString);
+				}
+			} catch (NumberFormatException e) {
+				// e.g. "none" or "signals"; use the default speed limit of the road type
+			}
+		}
+		switch(highway) {
+		case "motorway":
+			return speedMotorway;
+		case "motorway_link":
+			return speedMotorwayLink;
+		case "trunk":
+			return speedTrunk;
+		case "trunk_link":
+			return speedTrunkLink;
+		case "primary":
+			return speedPrimary;
+		case "primary_link":
+			return speedPrimaryLink;
+		case "secondary":
+			return speedSecondary;
+		case "secondary_link":
+			return speedSecondaryLink;
+		case "tertiary":
+			return speedTertiary;
+		case "tertiary_link":
+			return speedTertiaryLink;
+		case "unclassified":
+			return speedUnclassified;
+		case "residential":
+			return speedResidential;
+		case "living_street":
+			return speedLivingStreet;
+		default:
+			return speedDefault;
+		}
+	}
+
+	/**
+	 * Sets whether vertices that are closer than minimumDistance to each other are grouped
+	 * together when the map is created. Must be called before createMap.
+	 *
+	 * @param groupVertices true to group vertices
+	 */
+	public void setGroupVertices(boolean groupVertices) {
+		this.groupVertices = groupVertices;
 	}
 
 	/**
@@ -257,56 +334,67 @@ public class MapCreator {
 		createRoads();
 
 		// Output the map
-		CityMap cityMap = outputCityMap();
-		
-		return cityMap;
+		return outputCityMap();
 	}
 
 
 	/**
 	 * Crop a map using the bounding polygon by removing vertices that are outside the polygon.
+	 * The nodes of the map file that are outside the polygon are not added as vertices in the
+	 * first place (see addVertices), so for a map read from a file this only closes the polygon.
+	 * The vertices are tested in parallel, and then removed in id order.
 	 *
 	 * modifies {@code vertices }
 	 *
 	 */
 	public void cropMap() {
-		Object[] idObjects = vertices.keySet().toArray();
+		Vertex[] vertexArray = vertices.values().toArray(new Vertex[0]);
 		boundingPolygon.add(boundingPolygon.get(0));
-		for (Object idObj : idObjects) {
-			long id = (long) idObj;
-			Vertex vertex = vertices.get(id);
-			if (!insidePolygon(vertex.longitude, vertex.latitude)) {
-				vertex.severVertex();
-				vertices.remove(id);
+		PreparedPolygon polygon = preparedPolygon();
+		boolean[] outside = new boolean[vertexArray.length];
+		IntStream.range(0, vertexArray.length).parallel().forEach(i ->
+				outside[i] = !polygon.contains(vertexArray[i].longitude, vertexArray[i].latitude));
+		for (int i = 0; i < vertexArray.length; i++) {
+			if (outside[i]) {
+				vertexArray[i].severVertex();
+				vertices.remove(vertexArray[i].id);
 			}
 		}
 	}
 
 	/**
-	 * Check if a location (x,y) is inside the bounding polygon.
+	 * Set the bounding polygon from a KML file, closed as cropMap closes it, without creating a map. The
+	 * resources are matched to a map created elsewhere, e.g., loaded from a compiled map file (see CompiledMap),
+	 * against this polygon.
+	 * @param boundingPolygonKMLFile a KML file defining a bounding polygon of the simulated area
+	 */
+	public static void setBoundingPolygon(String boundingPolygonKMLFile) {
+		List<double[]> polygon = getPolygonFromKML(boundingPolygonKMLFile);
+		polygon.add(polygon.get(0));
+		boundingPolygon = polygon;
+	}
+
+	/**
+	 * Check if a location (x,y) is inside the bounding polygon. The polygon is prepared for fast
+	 * tests the first time it is used, and again whenever it changes (see PreparedPolygon).
 	 * @param x x coordinate of the location to check against the polygon
 	 * @param y y coordinate of the location to check against the polygon
 	 * @return
 	 */
 	public static boolean insidePolygon(double x, double y) {
-		int count = 0;
-		for (int i = 0; i < boundingPolygon.size() - 1; i++) {
-			double x1 = boundingPolygon.get(i)[0];
-			double y1 = boundingPolygon.get(i)[1];
-			double x2 = boundingPolygon.get(i+1)[0];
-			double y2 = boundingPolygon.get(i+1)[1];
-			double beta = (y - y1)/(y2 - y1);
-			double alpha = x1 + beta * (x2-x1) - x;
-			if (alpha > 0 && 0 <= beta && beta <= 1) {
-				count++;
-			}
-		}
-		count = count % 2;
-		if (count == 0) {
-			return false;
-		} else {
-			return true;
+		return preparedPolygon().contains(x, y);
+	}
+
+	/*
+	 * The bounding polygon prepared for insidePolygon, which is prepared again if the polygon changed.
+	 */
+	private static PreparedPolygon preparedPolygon() {
+		PreparedPolygon prepared = preparedPolygon;
+		if (prepared == null || prepared.points != boundingPolygon || prepared.size != boundingPolygon.size()) {
+			prepared = new PreparedPolygon(boundingPolygon);
+			preparedPolygon = prepared;
 		}
+		return prepared;
 	}
 
 	/**
@@ -347,55 +435,32 @@ public class MapCreator {
 	}
 	
 	/**
-	 *  Sets the idCounter to the maximum id in vertices and adds 1
+	 *  Sets the idCounter to the maximum id of the nodes in the map file and adds 1
 	 *
 	 * @modifes { @code idCounter }
 	 */
-	private void setIdCounter() {
+	private void setIdCounter(OSMNodes nodes) {
 		idCounter = -1L;
-		for (long id : vertices.keySet()) {
-			if (idCounter <= id) {
-				idCounter = id;
+		for (int i = 0; i < nodes.count; i++) {
+			if (idCounter <= nodes.ids[i]) {
+				idCounter = nodes.ids[i];
 			}
 		}
 		idCounter++;
 	}
 
-
-	/**
-	 * One iteration of the ClearMap function. Goes over every vertex
-	 * and determines if it's a dead end.
-	 * If that's the case then this vertex is removed along with the links
-	 * attached to it. 
-	 * In order to fully clear the whole map multiple iterations of this algorithm
-	 * are needed because it is possible that after removing certain vertices
-	 * in the first iteration, previous dead-end streets are now defined by other
-	 * vertices. These vertices then have to be removed in the second
-	 * iteration.
-	 *
-	 * modifies {@code vertices }
+	/*
+	 * Map the id of each vertex to its index in an array of vertices.
 	 */
-	public void clearMapIteration() throws IllegalStateException{
-		// set of vertices (ids) that need to be removed
-		Set<Long> toRemove = new TreeSet<>();
-		// go over every vertex
-		for (long id : vertices.keySet()) {
-			Vertex vertex = vertices.get(id);
-			Set<Link> roadsFrom = vertex.getLinksFrom();
-			Set<Link> roadsTo = vertex.getLinksTo();
-			// Remove vertices that have no outgoing roads or incoming roads. 
-			if (roadsFrom.size() == 0 || roadsTo.size() == 0) { 
-				toRemove.add(id);
-				continue;
-			}
-		}
-		// remove all the vertices that have to be removed
-		for (Long id : toRemove) {
-			vertices.get(id).cutVertex();
-			vertices.remove(id);
+	private static LongIntMap indexOf(Vertex[] vertexArray) {
+		LongIntMap index = new LongIntMap(vertexArray.length);
+		for (int i = 0; i < vertexArray.length; i++) {
+			index.put(vertexArray[i].id, i);
 		}
+		return index;
 	}
 
+
 	/**
 	 * Identify vertices that connect different streets and promote them to intersections
 	 */
@@ -447,25 +512,28 @@ public class MapCreator {
 	public void promoteIntersection(Vertex vertex) {
 		Intersection intersection= new Intersection(vertex);
 		intersections.put(intersection.id, intersection);
-		vertex.intersection = intersection;
 	}
 
 	/**
-	 * Create roads to connect intersections
+	 * Create roads to connect intersections. The links of the roads from each intersection are
+	 * found in parallel; the roads are then created in the order of the intersections and their
+	 * links, so that their ids do not depend on the number of threads.
 	 */
 	public void createRoads() {
-		for (Intersection intersection : intersections.values()) {
-			Vertex vertex = intersection.vertex;
+		Intersection[] intersectionArray = intersections.values().toArray(new Intersection[0]);
+		// the links of each road from each intersection
+		Link[][][] roadLinks = new Link[intersectionArray.length][][];
+		IntStream.range(0, intersectionArray.length).parallel().forEach(i -> {
+			Vertex vertex = intersectionArray[i].vertex;
+			roadLinks[i] = new Link[vertex.linksMapFrom.size()][];
+			int road = 0;
 			for (Link link : vertex.linksMapFrom.values()) {
-				// create a new road
-				Road road = new Road();
-				road.from = intersection;
-
 				// extend the road by visiting non-intersection vertices one by one until
 				// an intersection is reached
+				List<Link> links = new ArrayList<>();
 				Link currentLink = link;
-				while (currentLink.to.intersection == null) {
-					road.addLink(currentLink);
+				while (currentLink.to.getIntersection() == null) {
+					links.add(currentLink);
 					for (Link linkFrom : currentLink.to.linksMapFrom.values()) {
 						if (linkFrom.to != currentLink.from) {
 							currentLink = linkFrom;
@@ -474,81 +542,73 @@ public class MapCreator {
 					}
 				}
 				// add the link that connects to the end intersection
-				road.addLink(currentLink);
-				road.to = currentLink.to.intersection;
-				intersection.roadsMapFrom.put(road.to, road);
-				road.to.roadsMapTo.put(intersection,  road);
+				links.add(currentLink);
+				roadLinks[i][road++] = links.toArray(new Link[0]);
+			}
+		});
+
+		for (int i = 0; i < intersectionArray.length; i++) {
+			for (Link[] links : roadLinks[i]) {
+				// create a new road, which adds itself to the roads of both intersections
+				new Road(intersectionArray[i], links[links.length - 1].to.getIntersection(), Arrays.asList(links));
 			}
 		}
 	}
 
 	/**
 	 * Removes all dead end vertices, i.e. the vertices that do not have 
-	 * incoming links or outgoing links.
+	 * incoming links or outgoing links, until no dead end vertices are left.
+	 * Removing a dead end vertex may turn its neighbors into dead end vertices,
+	 * so the in and out degrees of the vertices are tracked, and a vertex is put 
+	 * on a worklist once one of its degrees drops to zero. This takes time linear
+	 * in the number of vertices and links, and leaves the same graph as removing
+	 * the dead end vertices in rounds until a round removes nothing.
 	 *
 	 * modifies {@code vertices }
 	 */
 	public void clearMap() {
-		int previousNumberVertices = vertices.size();
-		// number of vertices.size() can never be negative, therefore it
-		// always runs at least once.
-		int newNumberVertices = -2;
-		while (previousNumberVertices != newNumberVertices) {
-			clearMapIteration();
-			previousNumberVertices = newNumberVertices;
-			newNumberVertices = vertices.size();
+		// the vertices in id order, and the index of each vertex by its id
+		Vertex[] vertexArray = vertices.values().toArray(new Vertex[0]);
+		LongIntMap index = indexOf(vertexArray);
+		int[] inDegree = new int[vertexArray.length];
+		int[] outDegree = new int[vertexArray.length];
+		boolean[] removed = new boolean[vertexArray.length];
+		int[] worklist = new int[vertexArray.length];
+		int worklistEnd = 0;
+		for (int i = 0; i < vertexArray.length; i++) {
+			inDegree[i] = vertexArray[i].linksMapTo.size();
+			outDegree[i] = vertexArray[i].linksMapFrom.size();
+			if (inDegree[i] == 0 || outDegree[i] == 0) {
+				removed[i] = true;
+				worklist[worklistEnd++] = i;
+			}
 		}
-	}
 
-	/**
-	 * A single iteration in the process of grouping all the vertices
-	 * together.
-	 * In a single iteration every pair of connected vertices is checked
-	 * and if the distance between the vertices is smaller than the input
-	 * distance, then the two vertices are grouped together. This means
-	 * that a single new vertex is added with incoming and outgoing links
-	 * identical to the combination of the two original vertices.
-	 *
-	 * @param distance the minimum distance such that two vertices are grouped together
-	 * modifies {@code vertices }
-	 */
-	public void groupVerticesIteration(double distance) {
-		for (long id : vertices.keySet()) {
-			Vertex interFrom = vertices.get(id);
-			// check if the distance between two connected vertices is smaller than
-			// the minimum distance
-			for (Link link : interFrom.getLinksFrom()) {
-				if (link.from.distanceTo(link.to) <= distance) {
-					Vertex interTo = link.to;
-					double newLongtitude = (interFrom.longitude + interTo.longitude)/2;
-					double newLatitude = (interFrom.latitude + interTo.latitude)/2;
-					double newXY[] = projector.fromLatLon(newLatitude, newLongtitude);
-					// it is very important that the id of newInter is unique!
-					Vertex newInter = new Vertex(newLongtitude, newLatitude, newXY[0], newXY[1], idCounter++);  
-					for (Link inter1From : interFrom.getLinksFrom()) {
-						if (inter1From.to.id != interTo.id) {
-							newInter.addEdge(inter1From.to, newInter.distanceTo(inter1From.to), inter1From.speed);
-						}
-					}
-					for (Link inter1To : interFrom.getLinksTo()) {
-						inter1To.from.addEdge(newInter, newInter.distanceTo(inter1To.from), inter1To.speed);
-					}
-					for (Link inter2From : interTo.getLinksFrom()) { 
-						newInter.addEdge(inter2From.to, newInter.distanceTo(inter2From.to), inter2From.speed);
-					}
-					for (Link inter2To : interTo.getLinksTo()) {
-						if (inter2To.from.id != interFrom.id) {
-							inter2To.from.addEdge(newInter, newInter.distanceTo(inter2To.from), inter2To.speed);
-						}
-					}                    interFrom.severVertex();
-					interTo.severVertex();
-					vertices.remove(interFrom.id);
-					vertices.remove(interTo.id);
-					vertices.put(newInter.id, newInter);
-					return;
+		// remove the dead end vertices from the graph one by one, updating the degrees of their neighbors
+		for (int next = 0; next < worklistEnd; next++) {
+			Vertex vertex = vertexArray[worklist[next]];
+			for (Vertex neighbor : vertex.linksMapFrom.keySet()) {
+				int j = index.get(neighbor.id);
+				if (!removed[j] && --inDegree[j] == 0) {
+					removed[j] = true;
+					worklist[worklistEnd++] = j;
+				}
+			}
+			for (Vertex neighbor : vertex.linksMapTo.keySet()) {
+				int j = index.get(neighbor.id);
+				if (!removed[j] && --outDegree[j] == 0) {
+					removed[j] = true;
+					worklist[worklistEnd++] = j;
 				}
 			}
 		}
+
+		// remove all the vertices that have to be removed
+		for (int next = 0; next < worklistEnd; next++) {
+			Vertex vertex = vertexArray[worklist[next]];
+			vertex.severVertex();
+			vertices.remove(vertex.id);
+		}
 	}
 
 	/**
@@ -558,61 +618,265 @@ public class MapCreator {
 	 * is less than minimumDistance, are replaced by a single vertex whose
 	 * incoming and outgoing vertices are the same as the combination of the grouped
 	 * vertices.
-	 * This is accomplished by running groupVerticesIteration until no additional
-	 * vertices are grouped together
+	 * Only vertices that are connected by a link are grouped. All groups are formed 
+	 * in a single pass with a union-find structure: the links between close vertices 
+	 * are visited from short to long, and the groups at 
+	 * both ends of a link are joined if their centers are within minimumDistance of 
+	 * each other, so that a chain of close vertices does not end up as a single vertex. 
+	 * Every group of more than one vertex is then replaced by a vertex at its center,
+	 * and the links of the group are rewired to it in bulk. Where several links end up
+	 * between the same two vertices, the fastest one is kept.
 	 *
 	 * modifies {@code vertices }
 	 */
 	public void groupVertices() {
-		int previousNumberVertices = vertices.size();
-		// number of vertices.size() can never be negative, therefore it
-		// always runs at least once.
-		int newNumberVertices = -2;
-		while (previousNumberVertices != newNumberVertices) {
-			groupVerticesIteration(minimumDistance);
-			previousNumberVertices = newNumberVertices;
-			newNumberVertices = vertices.size();
+		// the vertices in id order, and the index of each vertex by its id
+		Vertex[] vertexArray = vertices.values().toArray(new Vertex[0]);
+		int n = vertexArray.length;
+		LongIntMap index = indexOf(vertexArray);
+
+		// the links between close vertices, ordered by length and then by the indices of their vertices
+		int linkCount = 0;
+		for (Vertex vertex : vertexArray) {
+			linkCount += vertex.linksMapFrom.size();
 		}
+		int[] closeFrom = new int[linkCount];
+		int[] closeTo = new int[linkCount];
+		double[] closeLength = new double[linkCount];
+		int closeCount = 0;
+		for (int i = 0; i < n; i++) {
+			for (Vertex to : vertexArray[i].linksMapFrom.keySet()) {
+				double distance = vertexArray[i].distanceTo(to);
+				if (distance <= minimumDistance) {
+					closeFrom[closeCount] = i;
+					closeTo[closeCount] = index.get(to.id);
+					closeLength[closeCount] = distance;
+					closeCount++;
+				}
+			}
+		}
+		Integer[] closeOrder = new Integer[closeCount];
+		for (int k = 0; k < closeCount; k++) {
+			closeOrder[k] = k;
+		}
+		Arrays.sort(closeOrder, (k1, k2) -> {
+			int c = Double.compare(closeLength[k1], closeLength[k2]);
+			if (c != 0) {
+				return c;
+			}
+			c = Integer.compare(closeFrom[k1], closeFrom[k2]);
+			return c != 0 ? c : Integer.compare(closeTo[k1], closeTo[k2]);
+		});
+
+		// union-find over the vertices, with the number of vertices and the sums of the coordinates of each group
+		int[] parent = new int[n];
+		int[] count = new int[n];
+		double[] sumX = new double[n];
+		double[] sumY = new double[n];
+		double[] sumLongitude = new double[n];
+		double[] sumLatitude = new double[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+			count[i] = 1;
+			sumX[i] = vertexArray[i].getX();
+			sumY[i] = vertexArray[i].getY();
+			sumLongitude[i] = vertexArray[i].longitude;
+			sumLatitude[i] = vertexArray[i].latitude;
+		}
+		boolean grouped = false;
+		for (int k : closeOrder) {
+			int root1 = find(parent, closeFrom[k]);
+			int root2 = find(parent, closeTo[k]);
+			if (root1 == root2) {
+				continue;
+			}
+			double dx = sumX[root1] / count[root1] - sumX[root2] / count[root2];
+			double dy = sumY[root1] / count[root1] - sumY[root2] / count[root2];
+			if (Math.sqrt(dx * dx + dy * dy) > minimumDistance) {
+				continue;
+			}
+			if (count[root1] < count[root2]) {
+				int swap = root1;
+				root1 = root2;
+				root2 = swap;
+			}
+			parent[root2] = root1;
+			count[root1] += count[root2];
+			sumX[root1] += sumX[root2];
+			sumY[root1] += sumY[root2];
+			sumLongitude[root1] += sumLongitude[root2];
+			sumLatitude[root1] += sumLatitude[root2];
+			grouped = true;
+		}
+		if (!grouped) {
+			return;
+		}
+
+		// the vertex that replaces each vertex: a new vertex at the center of its group, or the vertex itself
+		Vertex[] replacement = new Vertex[n];
+		for (int i = 0; i < n; i++) {
+			int root = find(parent, i);
+			if (count[root] == 1) {
+				replacement[i] = vertexArray[i];
+			} else {
+				if (replacement[root] == null) {
+					double newLongitude = sumLongitude[root] / count[root];
+					double newLatitude = sumLatitude[root] / count[root];
+					double newXY[] = projector.fromLatLon(newLatitude, newLongitude);
+					// it is very important that the id of the new vertex is unique!
+					replacement[root] = new Vertex(newLongitude, newLatitude, newXY[0], newXY[1], idCounter++);
+				}
+				replacement[i] = replacement[root];
+			}
+		}
+
+		// the links to rewire, which are those with a grouped vertex at one of their ends
+		List<Link> rewired = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			for (Link link : vertexArray[i].linksMapFrom.values()) {
+				if (replacement[i] != vertexArray[i] || replacement[index.get(link.to.id)] != link.to) {
+					rewired.add(link);
+				}
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (replacement[i] != vertexArray[i]) {
+				vertexArray[i].severVertex();
+				vertices.remove(vertexArray[i].id);
+				vertices.put(replacement[i].id, replacement[i]);
+			}
+		}
+		for (Link link : rewired) {
+			Vertex from = replacement[index.get(link.from.id)];
+			Vertex to = replacement[index.get(link.to.id)];
+			if (from == to) {
+				continue;
+			}
+			Link existing = from.linksMapFrom.get(to);
+			if (existing == null || existing.speed < link.speed) {
+				from.addEdge(to, from.distanceTo(to), link.speed);
+			}
+		}
+	}
+
+	/*
+	 * The root of the group of a vertex, halving the path to it on the way.
+	 */
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
 	}
 
+	/**
+	 * Keeps only the largest strongly connected component of the map, so that every
+	 * intersection can be reached from every other intersection. Among components of 
+	 * the same size, the one with the smallest vertex id is kept. The components are
+	 * found with an iterative version of Tarjan's algorithm on the links in primitive
+	 * arrays, which takes time linear in the number of vertices and links and does not
+	 * recurse, so large maps do not overflow the stack.
+	 *
+	 * modifies {@code vertices }
+	 */
 	public void fixMap() {
-		boolean check = true;
-		while (check) {
-			check = false;
-			Object[] ids = vertices.keySet().toArray();
-			for (Object idObj : ids) {
-				long id = (long) idObj;
-				Vertex vertex = vertices.get(id);
-				if (vertex.getAdjacentFrom().isEmpty()) {
-					vertex.cutVertex();
-					vertices.remove(id);
-					check = true;
-				}
+		if (vertices.isEmpty()) {
+			return;
+		}
+
+		// the vertices in id order, and their outgoing links in compressed sparse row form
+		Vertex[] vertexArray = vertices.values().toArray(new Vertex[0]);
+		int n = vertexArray.length;
+		LongIntMap index = indexOf(vertexArray);
+		int[] adjacentStart = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			adjacentStart[i + 1] = adjacentStart[i] + vertexArray[i].linksMapFrom.size();
+		}
+		int[] adjacent = new int[adjacentStart[n]];
+		for (int i = 0; i < n; i++) {
+			int k = adjacentStart[i];
+			for (Vertex neighbor : vertexArray[i].linksMapFrom.keySet()) {
+				adjacent[k++] = index.get(neighbor.id);
+			}
+		}
+
+		// Tarjan's algorithm, with the recursion replaced by an explicit stack of the vertices being visited
+		// and the next link of each of them to follow.
+		int[] order = new int[n];
+		Arrays.fill(order, -1);
+		int[] lowLink = new int[n];
+		int[] component = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] visiting = new int[n];
+		int[] nextLink = new int[n];
+		int visitingSize = 0;
+		int visited = 0;
+		int components = 0;
+		int largest = -1;
+		int largestSize = 0;
+		int largestSmallest = n;
+		for (int root = 0; root < n; root++) {
+			if (order[root] >= 0) {
+				continue;
 			}
-			Set<Long> reached = new TreeSet<>();
-			long firstId = vertices.keySet().iterator().next();
-			Vertex firstVertex = vertices.get(firstId);
-			checkNeighbors(firstVertex, reached);
-			if (reached.size() != vertices.keySet().size()) {
-				ids = vertices.keySet().toArray();
-				for (Object idObj : ids) {
-					long id = (long) idObj;
-					if (!reached.contains(id)) {
-						Vertex vertex = vertices.get(id);
-						vertex.cutVertex();
-						vertices.remove(id);
-						check = true;
+			order[root] = lowLink[root] = visited++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			visiting[visitingSize] = root;
+			nextLink[visitingSize++] = adjacentStart[root];
+			while (visitingSize > 0) {
+				int v = visiting[visitingSize - 1];
+				int k = nextLink[visitingSize - 1];
+				if (k < adjacentStart[v + 1]) {
+					nextLink[visitingSize - 1]++;
+					int w = adjacent[k];
+					if (order[w] < 0) {
+						order[w] = lowLink[w] = visited++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						visiting[visitingSize] = w;
+						nextLink[visitingSize++] = adjacentStart[w];
+					} else if (onStack[w]) {
+						lowLink[v] = Math.min(lowLink[v], order[w]);
 					}
+					continue;
+				}
+				// all links of v are followed
+				visitingSize--;
+				if (visitingSize > 0) {
+					int parent = visiting[visitingSize - 1];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+				if (lowLink[v] == order[v]) {
+					// v is the root of a component, which consists of v and the vertices above it on the stack
+					int size = 0;
+					int smallest = n;
+					int w;
+					do {
+						w = stack[--stackSize];
+						onStack[w] = false;
+						component[w] = components;
+						size++;
+						smallest = Math.min(smallest, w);
+					} while (w != v);
+					if (size > largestSize || (size == largestSize && smallest < largestSmallest)) {
+						largest = components;
+						largestSize = size;
+						largestSmallest = smallest;
+					}
+					components++;
 				}
 			}
 		}
-	}
 
-	public void checkNeighbors(Vertex inter, Set<Long> reached) {
-		for (Vertex neighbor : inter.getAdjacentFrom()) {
-			if (!reached.contains(neighbor.id)) {
-				reached.add(neighbor.id);
-				checkNeighbors(neighbor, reached);
+		// remove all the vertices that are not in the largest component
+		for (int i = 0; i < n; i++) {
+			if (component[i] != largest) {
+				vertexArray[i].severVertex();
+				vertices.remove(vertexArray[i].id);
 			}
 		}
 	}
@@ -630,8 +894,11 @@ public class MapCreator {
 		int newNumberVertices = -2;
 		while (previousNumberVertices != newNumberVertices) {
 			clearMap();
-			// It seems unnecessary to group vertices given the size of the map we are considering.
-			// groupVertices();
+			// It seems unnecessary to group vertices given the size of the map we are considering,
+			// so grouping is only done when it is enabled.
+			if (groupVertices) {
+				groupVertices();
+			}
 			previousNumberVertices = newNumberVertices;
 			newNumberVertices = vertices.size();
 		}
@@ -640,11 +907,14 @@ public class MapCreator {
 
 
 	/**
-	 * Returns an instance of CityMap representing the map it created.
+	 * Returns an instance of CityMap representing the map it created. Every call returns the same instance.
 	 * 
 	 * @return an instance of CityMap
 	 */
 	public CityMap outputCityMap() {
+		if (cityMap != null) {
+			return cityMap;
+		}
 		KdTree kdTree = new KdTree();
 		for (Vertex vertex : vertices.values()) {
 			for (Link link : vertex.getLinksFrom()) {
@@ -657,7 +927,8 @@ public class MapCreator {
 				roads.add(road);
 			}
 		}
-		return new CityMap(intersections, roads, projector, kdTree);
+		cityMap = new CityMap(intersections, roads, projector, kdTree);
+		return cityMap;
 	}
 
 	public List<double[]> boundingPolygon() {
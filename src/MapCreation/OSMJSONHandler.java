@@ -0,0 +1,170 @@
+package MapCreation;
+
+import java.io.IOException;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The OSMJSONHandler class reads an OSM JSON map file as it is parsed, without building the JSON objects of
+ * the whole file in memory. It receives the parse events of the json-simple parser for the file, which is of
+ * the form {..., "elements": [{"type": "node", "id": ..., "lat": ..., "lon": ...}, ..., {"type": "way",
+ * "id": ..., "nodes": [...], "tags": {...}}, ...]}.
+ *
+ * The nodes are buffered in OSMNodes and the ways in OSMWays, as the map creator can only turn them into
+ * vertices and links once the whole file is read. All other members of the elements are skipped.
+ */
+class OSMJSONHandler implements ContentHandler {
+
+	// The depths of the parse events: the top level object, the elements array, an element, and the tags
+	// or the nodes of an element
+	private static final int TOP_LEVEL = 1;
+	private static final int ELEMENTS = 2;
+	private static final int ELEMENT = 3;
+	private static final int ELEMENT_MEMBER = 4;
+
+	// The number of objects and arrays that are open
+	private int depth = 0;
+
+	// Whether the parser is in the elements array
+	private boolean inElements = false;
+
+	// The key of the current entry of the top level object, of the element, and of the tags of the element
+	private String topLevelKey;
+	private String elementKey;
+	private String tagKey;
+
+	// The members of the current element that are used
+	private String type;
+	private long id;
+	private double latitude;
+	private double longitude;
+	private String highway;
+	private String maxSpeed;
+	private String oneway;
+
+	// The buffered nodes and ways
+	final OSMNodes nodes = new OSMNodes();
+	final OSMWays ways = new OSMWays();
+
+	@Override
+	public void startJSON() throws ParseException, IOException {
+	}
+
+	@Override
+	public void endJSON() throws ParseException, IOException {
+	}
+
+	@Override
+	public boolean startObject() throws ParseException, IOException {
+		depth++;
+		if (inElements && depth == ELEMENT) {
+			type = null;
+			highway = null;
+			maxSpeed = null;
+			oneway = null;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endObject() throws ParseException, IOException {
+		if (inElements && depth == ELEMENT) {
+			endElement();
+		}
+		depth--;
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) throws ParseException, IOException {
+		if (depth == TOP_LEVEL) {
+			topLevelKey = key;
+		} else if (depth == ELEMENT) {
+			elementKey = key;
+		} else if (depth == ELEMENT_MEMBER) {
+			tagKey = key;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() throws ParseException, IOException {
+		return true;
+	}
+
+	@Override
+	public boolean startArray() throws ParseException, IOException {
+		depth++;
+		if (depth == ELEMENTS && "elements".equals(topLevelKey)) {
+			inElements = true;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endArray() throws ParseException, IOException {
+		if (depth == ELEMENTS) {
+			inElements = false;
+		}
+		depth--;
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) throws ParseException, IOException {
+		if (!inElements) {
+			return true;
+		}
+		if (depth == ELEMENT) {
+			switch (elementKey) {
+			case "type":
+				type = (String) value;
+				break;
+			case "id":
+				id = (long) value;
+				break;
+			case "lat":
+				latitude = ((Number) value).doubleValue();
+				break;
+			case "lon":
+				longitude = ((Number) value).doubleValue();
+				break;
+			default:
+				break;
+			}
+		} else if (depth == ELEMENT_MEMBER && "nodes".equals(elementKey)) {
+			// Buffer the node ids right away; they are dropped again if the element is not a way.
+			ways.addNode((long) value);
+		} else if (depth == ELEMENT_MEMBER && "tags".equals(elementKey)) {
+			switch (tagKey) {
+			case "highway":
+				highway = (String) value;
+				break;
+			case "maxspeed":
+				maxSpeed = (String) value;
+				break;
+			case "oneway":
+				oneway = (String) value;
+				break;
+			default:
+				break;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Buffer a node or a way.
+	 */
+	private void endElement() {
+		if ("node".equals(type)) {
+			nodes.add(id, latitude, longitude);
+		} else if ("way".equals(type)) {
+			ways.endWay(MapCreator.maxSpeed(highway, maxSpeed), "yes".equals(oneway));
+			return;
+		}
+		// Drop the node ids of an element that is not a way.
+		ways.dropWay();
+	}
+}
@@ -0,0 +1,64 @@
+package MapCreation;
+
+import java.util.Arrays;
+
+/**
+ * The OSMNodes class buffers the nodes read from an OSM map file. A node only becomes a vertex if a way goes
+ * through it and it is inside the bounding polygon, which is only known once the whole file is read, so their
+ * ids and coordinates are kept in primitive arrays until then (see MapCreator.addVertices). Most nodes of a map
+ * file never become a vertex, and a node takes a few dozen bytes here instead of the hundreds of bytes of a
+ * vertex.
+ */
+class OSMNodes {
+
+	// The id, the latitude and the longitude of each node, in file order
+	long[] ids = new long[1024];
+	double[] latitudes = new double[1024];
+	double[] longitudes = new double[1024];
+
+	// The number of nodes
+	int count = 0;
+
+	/**
+	 * Add a node.
+	 *
+	 * @param id the id of the node
+	 * @param latitude the latitude of the node
+	 * @param longitude the longitude of the node
+	 */
+	void add(long id, double latitude, double longitude) {
+		if (count == ids.length) {
+			ids = Arrays.copyOf(ids, 2 * count);
+			latitudes = Arrays.copyOf(latitudes, 2 * count);
+			longitudes = Arrays.copyOf(longitudes, 2 * count);
+		}
+		ids[count] = id;
+		latitudes[count] = latitude;
+		longitudes[count] = longitude;
+		count++;
+	}
+
+	/**
+	 * Append the nodes of another buffer.
+	 *
+	 * @param other the other buffer
+	 */
+	void addAll(OSMNodes other) {
+		for (int i = 0; i < other.count; i++) {
+			add(other.ids[i], other.latitudes[i], other.longitudes[i]);
+		}
+	}
+
+	/**
+	 * Map the id of each node to its index. If a node is in the file more than once, its last index is used.
+	 *
+	 * @return the map from ids to indices
+	 */
+	LongIntMap index() {
+		LongIntMap index = new LongIntMap(count);
+		for (int i = 0; i < count; i++) {
+			index.put(ids[i], i);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,588 @@
+package MapCreation;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The OSMPBFReader class reads an OSM PBF map file (e.g., an .osm.pbf extract), which is much smaller and
+ * much faster to read than the JSON of the same area. See https://wiki.openstreetmap.org/wiki/PBF_Format.
+ *
+ * The file is a sequence of blobs, each of which holds a zlib compressed block of nodes, ways or relations.
+ * The blocks are decompressed and decoded in parallel, and their results are used in file order, so the map
+ * does not depend on the number of threads. The file is read twice: the first pass buffers the ways that cars
+ * can use (see HIGHWAYS) into OSMWays and remembers which blobs hold nodes; the second pass only decodes those
+ * blobs and buffers the nodes that the buffered ways go through into OSMNodes, in file order. All other nodes,
+ * ways and relations are skipped.
+ */
+class OSMPBFReader {
+
+	// The highway tags of the ways that are read, which are those that cars can use
+	static final Set<String> HIGHWAYS = new HashSet<>(Arrays.asList(
+			"motorway", "motorway_link", "trunk", "trunk_link", "primary", "primary_link",
+			"secondary", "secondary_link", "tertiary", "tertiary_link", "unclassified",
+			"residential", "living_street", "service"));
+
+	// The features of the OSMHeader block that the reader supports
+	private static final Set<String> SUPPORTED_FEATURES = new HashSet<>(Arrays.asList("OsmSchema-V0.6", "DenseNodes"));
+
+	// The nodes that the ways go through, in file order
+	final OSMNodes nodes = new OSMNodes();
+
+	// The number of threads that decode blocks
+	private final int threads;
+
+	/**
+	 * Constructor of OSMPBFReader.
+	 */
+	OSMPBFReader() {
+		this.threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Read a PBF file, buffering the nodes that the ways go through into nodes.
+	 *
+	 * @param mapFile the PBF file
+	 * @return the ways that cars can use, in file order
+	 * @throws IOException if the file cannot be read or is not a supported PBF file
+	 */
+	OSMWays read(String mapFile) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (RandomAccessFile file = new RandomAccessFile(mapFile, "r")) {
+			// first pass: buffer the ways, and remember the blobs with nodes
+			OSMWays ways = new OSMWays();
+			List<Long> nodeBlobs = new ArrayList<>();
+			readBlocks(file, null, executor, OSMPBFReader::decodeWays, (position, block) -> {
+				ways.addAll(block.ways);
+				if (block.hasNodes) {
+					nodeBlobs.add(position);
+				}
+			});
+
+			// the ids of the nodes that the ways go through; the map is only read once it is filled
+			LongIntMap nodeIds = new LongIntMap(ways.start[ways.count] / 2);
+			for (int i = 0; i < ways.start[ways.count]; i++) {
+				nodeIds.put(ways.nodes[i], 0);
+			}
+
+			// second pass: buffer the nodes
+			long[] positions = new long[nodeBlobs.size()];
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = nodeBlobs.get(i);
+			}
+			readBlocks(file, positions, executor, block -> decodeNodes(block, nodeIds), (position, block) -> nodes.addAll(block));
+			return ways;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 * Decodes a decompressed block into a result.
+	 */
+	private interface BlockDecoder<R> {
+		R decode(ProtoReader block) throws IOException;
+	}
+
+	/*
+	 * Uses the result of a block, given the position of its blob in the file.
+	 */
+	private interface BlockConsumer<R> {
+		void accept(long position, R result);
+	}
+
+	/*
+	 * Decompress and decode the data blocks at the given positions, or all data blocks if positions is null, in
+	 * parallel, and pass their results to the consumer in file order. At most two blocks per thread are read
+	 * ahead, which bounds the memory that is used.
+	 */
+	private <R> void readBlocks(RandomAccessFile file, long[] positions, ExecutorService executor, BlockDecoder<R> decoder, BlockConsumer<R> consumer) throws IOException {
+		ArrayDeque<Long> pendingPositions = new ArrayDeque<>();
+		ArrayDeque<Future<R>> pending = new ArrayDeque<>();
+		long position = 0;
+		int next = 0;
+		while (positions == null ? position < file.length() : next < positions.length) {
+			if (positions != null) {
+				position = positions[next++];
+			}
+			file.seek(position);
+			byte[] header = new byte[file.readInt()];
+			file.readFully(header);
+			String type = null;
+			int dataSize = 0;
+			ProtoReader blobHeader = new ProtoReader(header, 0, header.length);
+			while (blobHeader.hasMore()) {
+				int tag = blobHeader.readTag();
+				switch (tag >>> 3) {
+				case 1:
+					type = blobHeader.readString();
+					break;
+				case 3:
+					dataSize = (int) blobHeader.readVarint();
+					break;
+				default:
+					blobHeader.skip(tag);
+					break;
+				}
+			}
+			byte[] blob = new byte[dataSize];
+			file.readFully(blob);
+			long blobPosition = position;
+			position = file.getFilePointer();
+
+			if ("OSMHeader".equals(type)) {
+				checkHeader(decompress(blob));
+			} else if ("OSMData".equals(type)) {
+				pending.add(executor.submit(() -> decoder.decode(decompress(blob))));
+				pendingPositions.add(blobPosition);
+				if (pending.size() >= 2 * threads) {
+					consumer.accept(pendingPositions.poll(), get(pending.poll()));
+				}
+			}
+		}
+		while (!pending.isEmpty()) {
+			consumer.accept(pendingPositions.poll(), get(pending.poll()));
+		}
+	}
+
+	/*
+	 * Wait for the result of a block.
+	 */
+	private static <R> R get(Future<R> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/*
+	 * The block in a blob, which is either raw or zlib compressed.
+	 */
+	private static ProtoReader decompress(byte[] blob) throws IOException {
+		ProtoReader reader = new ProtoReader(blob, 0, blob.length);
+		int rawSize = 0;
+		ProtoReader raw = null;
+		ProtoReader zlib = null;
+		while (reader.hasMore()) {
+			int tag = reader.readTag();
+			switch (tag >>> 3) {
+			case 1:
+				raw = reader.readMessage();
+				break;
+			case 2:
+				rawSize = (int) reader.readVarint();
+				break;
+			case 3:
+				zlib = reader.readMessage();
+				break;
+			case 4:
+			case 6:
+			case 7:
+			case 8:
+				throw new IOException("Unsupported compression of a PBF blob");
+			default:
+				reader.skip(tag);
+				break;
+			}
+		}
+		if (raw != null) {
+			return raw;
+		}
+		if (zlib == null) {
+			throw new IOException("Empty PBF blob");
+		}
+		byte[] block = new byte[rawSize];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(zlib.buffer, zlib.position, zlib.limit - zlib.position);
+			int length = 0;
+			while (length < rawSize && !inflater.finished()) {
+				int inflated = inflater.inflate(block, length, rawSize - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != rawSize) {
+				throw new IOException("Corrupt PBF blob");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		return new ProtoReader(block, 0, rawSize);
+	}
+
+	/*
+	 * Check that the reader supports the features required by the OSMHeader block.
+	 */
+	private static void checkHeader(ProtoReader header) throws IOException {
+		while (header.hasMore()) {
+			int tag = header.readTag();
+			if (tag >>> 3 == 4) {
+				String feature = header.readString();
+				if (!SUPPORTED_FEATURES.contains(feature)) {
+					throw new IOException("Unsupported feature of the PBF file: " + feature);
+				}
+			} else {
+				header.skip(tag);
+			}
+		}
+	}
+
+	/*
+	 * The string table and the primitive groups of a PrimitiveBlock, and how to compute its coordinates.
+	 */
+	private static class PrimitiveBlock {
+		final List<byte[]> strings = new ArrayList<>();
+		final List<ProtoReader> groups = new ArrayList<>();
+		long granularity = 100;
+		long latitudeOffset = 0;
+		long longitudeOffset = 0;
+
+		PrimitiveBlock(ProtoReader block) throws IOException {
+			while (block.hasMore()) {
+				int tag = block.readTag();
+				switch (tag >>> 3) {
+				case 1:
+					ProtoReader table = block.readMessage();
+					while (table.hasMore()) {
+						int stringTag = table.readTag();
+						if (stringTag >>> 3 == 1) {
+							ProtoReader string = table.readMessage();
+							strings.add(Arrays.copyOfRange(string.buffer, string.position, string.limit));
+						} else {
+							table.skip(stringTag);
+						}
+					}
+					break;
+				case 2:
+					groups.add(block.readMessage());
+					break;
+				case 17:
+					granularity = block.readVarint();
+					break;
+				case 19:
+					latitudeOffset = block.readVarint();
+					break;
+				case 20:
+					longitudeOffset = block.readVarint();
+					break;
+				default:
+					block.skip(tag);
+					break;
+				}
+			}
+		}
+
+		double latitude(long latitude) {
+			return .000000001 * (latitudeOffset + granularity * latitude);
+		}
+
+		double longitude(long longitude) {
+			return .000000001 * (longitudeOffset + granularity * longitude);
+		}
+
+		String string(long index) {
+			return new String(strings.get((int) index), StandardCharsets.UTF_8);
+		}
+	}
+
+	/*
+	 * The ways of a block that cars can use, and whether the block holds nodes.
+	 */
+	private static class WayBlock {
+		final OSMWays ways = new OSMWays();
+		boolean hasNodes = false;
+	}
+
+	private static WayBlock decodeWays(ProtoReader data) throws IOException {
+		PrimitiveBlock block = new PrimitiveBlock(data);
+		WayBlock result = new WayBlock();
+		// the indices in the string table of the tags that are used
+		int highwayKey = indexOf(block, "highway");
+		int maxSpeedKey = indexOf(block, "maxspeed");
+		int onewayKey = indexOf(block, "oneway");
+		for (ProtoReader group : block.groups) {
+			while (group.hasMore()) {
+				int tag = group.readTag();
+				switch (tag >>> 3) {
+				case 1:
+				case 2:
+					result.hasNodes = true;
+					group.skip(tag);
+					break;
+				case 3:
+					if (highwayKey < 0) {
+						group.skip(tag);
+						break;
+					}
+					ProtoReader way = group.readMessage();
+					long[] keys = new long[0];
+					long[] values = new long[0];
+					ProtoReader refs = null;
+					while (way.hasMore()) {
+						int wayTag = way.readTag();
+						switch (wayTag >>> 3) {
+						case 2:
+							keys = way.readUnsigned(wayTag, keys);
+							break;
+						case 3:
+							values = way.readUnsigned(wayTag, values);
+							break;
+						case 8:
+							if ((wayTag & 7) != 2) {
+								throw new IOException("Unpacked refs of a PBF way");
+							}
+							refs = way.readMessage();
+							break;
+						default:
+							way.skip(wayTag);
+							break;
+						}
+					}
+					String highway = null;
+					String maxSpeed = null;
+					String oneway = null;
+					for (int i = 0; i < keys.length && i < values.length; i++) {
+						if (keys[i] == highwayKey) {
+							highway = block.string(values[i]);
+						} else if (keys[i] == maxSpeedKey) {
+							maxSpeed = block.string(values[i]);
+						} else if (keys[i] == onewayKey) {
+							oneway = block.string(values[i]);
+						}
+					}
+					if (refs == null || !HIGHWAYS.contains(highway)) {
+						break;
+					}
+					long id = 0;
+					while (refs.hasMore()) {
+						id += refs.readSigned();
+						result.ways.addNode(id);
+					}
+					result.ways.endWay(MapCreator.maxSpeed(highway, maxSpeed), "yes".equals(oneway));
+					break;
+				default:
+					group.skip(tag);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * The index of a string in the string table of a block, or -1.
+	 */
+	private static int indexOf(PrimitiveBlock block, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < block.strings.size(); i++) {
+			if (Arrays.equals(block.strings.get(i), bytes)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * The nodes of a block with one of the given ids.
+	 */
+	private static OSMNodes decodeNodes(ProtoReader data, LongIntMap nodeIds) throws IOException {
+		PrimitiveBlock block = new PrimitiveBlock(data);
+		OSMNodes result = new OSMNodes();
+		for (ProtoReader group : block.groups) {
+			while (group.hasMore()) {
+				int tag = group.readTag();
+				switch (tag >>> 3) {
+				case 1:
+					ProtoReader node = group.readMessage();
+					long id = 0;
+					long latitude = 0;
+					long longitude = 0;
+					while (node.hasMore()) {
+						int nodeTag = node.readTag();
+						switch (nodeTag >>> 3) {
+						case 1:
+							id = node.readSigned();
+							break;
+						case 8:
+							latitude = node.readSigned();
+							break;
+						case 9:
+							longitude = node.readSigned();
+							break;
+						default:
+							node.skip(nodeTag);
+							break;
+						}
+					}
+					if (nodeIds.containsKey(id)) {
+						result.add(id, block.latitude(latitude), block.longitude(longitude));
+					}
+					break;
+				case 2:
+					ProtoReader dense = group.readMessage();
+					ProtoReader ids = null;
+					ProtoReader latitudes = null;
+					ProtoReader longitudes = null;
+					while (dense.hasMore()) {
+						int denseTag = dense.readTag();
+						switch (denseTag >>> 3) {
+						case 1:
+							ids = dense.readMessage();
+							break;
+						case 8:
+							latitudes = dense.readMessage();
+							break;
+						case 9:
+							longitudes = dense.readMessage();
+							break;
+						default:
+							dense.skip(denseTag);
+							break;
+						}
+					}
+					if (ids == null || latitudes == null || longitudes == null) {
+						break;
+					}
+					// the ids and coordinates of dense nodes are delta coded
+					long denseId = 0;
+					long denseLatitude = 0;
+					long denseLongitude = 0;
+					while (ids.hasMore()) {
+						denseId += ids.readSigned();
+						denseLatitude += latitudes.readSigned();
+						denseLongitude += longitudes.readSigned();
+						if (nodeIds.containsKey(denseId)) {
+							result.add(denseId, block.latitude(denseLatitude), block.longitude(denseLongitude));
+						}
+					}
+					break;
+				default:
+					group.skip(tag);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Reads the protocol buffer encoding of a message in buffer from position to limit.
+	 */
+	private static class ProtoReader {
+		final byte[] buffer;
+		int position;
+		final int limit;
+
+		ProtoReader(byte[] buffer, int position, int limit) {
+			this.buffer = buffer;
+			this.position = position;
+			this.limit = limit;
+		}
+
+		boolean hasMore() {
+			return position < limit;
+		}
+
+		int readTag() throws IOException {
+			return (int) readVarint();
+		}
+
+		long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (position >= limit) {
+					throw new IOException("Truncated PBF message");
+				}
+				byte b = buffer[position++];
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint in PBF message");
+		}
+
+		long readSigned() throws IOException {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/*
+		 * A length delimited field, i.e., a message, a string, bytes or a packed repeated field.
+		 */
+		ProtoReader readMessage() throws IOException {
+			int length = (int) readVarint();
+			if (length < 0 || length > limit - position) {
+				throw new IOException("Truncated PBF message");
+			}
+			ProtoReader message = new ProtoReader(buffer, position, position + length);
+			position += length;
+			return message;
+		}
+
+		String readString() throws IOException {
+			ProtoReader string = readMessage();
+			return new String(buffer, string.position, string.limit - string.position, StandardCharsets.UTF_8);
+		}
+
+		/*
+		 * Append a repeated unsigned field, which is either packed or a single value, to values.
+		 */
+		long[] readUnsigned(int tag, long[] values) throws IOException {
+			if ((tag & 7) != 2) {
+				values = Arrays.copyOf(values, values.length + 1);
+				values[values.length - 1] = readVarint();
+				return values;
+			}
+			ProtoReader packed = readMessage();
+			int count = values.length;
+			values = Arrays.copyOf(values, count + packed.limit - packed.position);
+			while (packed.hasMore()) {
+				values[count++] = packed.readVarint();
+			}
+			return Arrays.copyOf(values, count);
+		}
+
+		void skip(int tag) throws IOException {
+			switch (tag & 7) {
+			case 0:
+				readVarint();
+				break;
+			case 1:
+				position += 8;
+				break;
+			case 2:
+				readMessage();
+				break;
+			case 5:
+				position += 4;
+				break;
+			default:
+				throw new IOException("Unsupported wire type in PBF message: " + (tag & 7));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package MapCreation;
+
+import java.util.Arrays;
+
+/**
+ * The OSMWays class buffers the ways read from an OSM map file. The ways can only be turned into links once
+ * all nodes are known, so their node ids, speed limits and one way flags are kept in primitive arrays until
+ * the whole file is read (see MapCreator.addLinks).
+ *
+ * The node ids of a way are added one by one, after which the way is either ended with its speed limit and one
+ * way flag, or dropped, e.g., because the element turns out not to be a way.
+ */
+class OSMWays {
+
+	// The node ids of all ways one after the other; the nodes of way w are at start[w] <= i < start[w + 1]
+	long[] nodes = new long[1024];
+	int[] start = new int[65];
+
+	// The speed limit in km/h and whether it is a one way street, of each way
+	double[] speed = new double[64];
+	boolean[] oneway = new boolean[64];
+
+	// The number of ways
+	int count = 0;
+
+	// The end of the node ids, including those of the way that is not ended yet
+	private int end = 0;
+
+	/**
+	 * Add a node id to the way that is not ended yet.
+	 *
+	 * @param id the node id
+	 */
+	void addNode(long id) {
+		if (end == nodes.length) {
+			nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+		}
+		nodes[end++] = id;
+	}
+
+	/**
+	 * End the way, of which all node ids are added.
+	 *
+	 * @param speed the speed limit of the way in km/h
+	 * @param oneway whether the way is a one way street
+	 */
+	void endWay(double speed, boolean oneway) {
+		if (count + 1 == this.speed.length) {
+			this.speed = Arrays.copyOf(this.speed, 2 * this.speed.length);
+			this.oneway = Arrays.copyOf(this.oneway, this.speed.length);
+			start = Arrays.copyOf(start, this.speed.length + 1);
+		}
+		this.speed[count] = speed;
+		this.oneway[count] = oneway;
+		count++;
+		start[count] = end;
+	}
+
+	/**
+	 * Drop the node ids added since the last way ended.
+	 */
+	void dropWay() {
+		end = start[count];
+	}
+
+	/**
+	 * Append the ways of another buffer.
+	 *
+	 * @param other the other buffer
+	 */
+	void addAll(OSMWays other) {
+		for (int way = 0; way < other.count; way++) {
+			for (int i = other.start[way]; i < other.start[way + 1]; i++) {
+				addNode(other.nodes[i]);
+			}
+			endWay(other.speed[way], other.oneway[way]);
+		}
+	}
+}
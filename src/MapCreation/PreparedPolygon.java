@@ -0,0 +1,194 @@
+package MapCreation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The PreparedPolygon class answers the point in polygon test of MapCreator.insidePolygon for a fixed polygon
+ * in near constant time. It gives exactly the same answers as the ray crossing loop of the original test:
+ * a point is inside if the ray from the point in the +x direction crosses an odd number of edges, where an
+ * edge (x1, y1)-(x2, y2) is crossed if beta = (y - y1) / (y2 - y1) is in [0, 1] and x1 + beta * (x2 - x1) > x.
+ *
+ * The bounding box of the polygon, extended by a small margin, is divided into a uniform grid of cells. Only the
+ * edges that reach at least as far right as a cell and that overlap the row of the cell can be crossed from a
+ * point in the cell; these are the edges of the cell. A cell is inside or outside if none of its edges
+ * intersects the cell or starts or ends in its row, so that the ray from every point in the cell crosses the
+ * same edges; its answer is computed once. The other cells are boundary cells, for which the crossings of their
+ * edges are counted. Points above, below or to the right of the bounding box are rejected right away; points to
+ * the left of it are answered by the leftmost cell of their row, which holds all edges of the row.
+ */
+class PreparedPolygon {
+
+	// The state of a cell
+	private static final byte OUTSIDE = 0;
+	private static final byte INSIDE = 1;
+	private static final byte BOUNDARY = 2;
+
+	// The maximum number of cells along each side of the grid
+	private static final int MAX_CELLS = 256;
+
+	// The polygon points the polygon is prepared from, and their number, to detect a change of the polygon
+	final List<double[]> points;
+	final int size;
+
+	// The edges from (x1[i], y1[i]) to (x2[i], y2[i])
+	private final double[] x1;
+	private final double[] y1;
+	private final double[] x2;
+	private final double[] y2;
+
+	// The bounding box of the polygon, extended by margin in all directions
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
+
+	// The margin around the edges, well above the rounding errors of the crossing test
+	private final double margin;
+
+	// The number of columns and rows of the grid, and the size of a cell
+	private final int columns;
+	private final int rows;
+	private final double cellWidth;
+	private final double cellHeight;
+
+	// The state of each cell, row by row
+	private final byte[] state;
+
+	// The edges of the boundary cells: the edges of cell k are cellEdges[cellStart[k]] to cellEdges[cellStart[k + 1] - 1]
+	private final int[] cellStart;
+	private final int[] cellEdges;
+
+	/**
+	 * Constructor of PreparedPolygon.
+	 *
+	 * @param points the points of the polygon as [x,y] pairs; the edges are between consecutive points, so the
+	 * polygon is closed if the last point equals the first one
+	 */
+	PreparedPolygon(List<double[]> points) {
+		this.points = points;
+		this.size = points.size();
+		int edges = Math.max(0, size - 1);
+		x1 = new double[edges];
+		y1 = new double[edges];
+		x2 = new double[edges];
+		y2 = new double[edges];
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxAbs = 0;
+		for (int i = 0; i < edges; i++) {
+			x1[i] = points.get(i)[0];
+			y1[i] = points.get(i)[1];
+			x2[i] = points.get(i + 1)[0];
+			y2[i] = points.get(i + 1)[1];
+			minX = Math.min(minX, Math.min(x1[i], x2[i]));
+			minY = Math.min(minY, Math.min(y1[i], y2[i]));
+			maxX = Math.max(maxX, Math.max(x1[i], x2[i]));
+			maxY = Math.max(maxY, Math.max(y1[i], y2[i]));
+			maxAbs = Math.max(maxAbs, Math.max(Math.max(Math.abs(x1[i]), Math.abs(x2[i])), Math.max(Math.abs(y1[i]), Math.abs(y2[i]))));
+		}
+		margin = 1e-9 * (1 + maxAbs);
+		this.minX = minX - margin;
+		this.minY = minY - margin;
+		this.maxX = maxX + margin;
+		this.maxY = maxY + margin;
+
+		int cells = edges == 0 ? 1 : Math.min(MAX_CELLS, Math.max(16, 4 * (int) Math.ceil(Math.sqrt(edges))));
+		columns = cells;
+		rows = cells;
+		cellWidth = edges == 0 ? 1 : (this.maxX - this.minX) / columns;
+		cellHeight = edges == 0 ? 1 : (this.maxY - this.minY) / rows;
+
+		state = new byte[rows * columns];
+		cellStart = new int[rows * columns + 1];
+		int[] cellEdges = new int[16];
+		int count = 0;
+		int[] candidates = new int[edges];
+		for (int row = 0; row < rows; row++) {
+			double rowMinY = this.minY + row * cellHeight;
+			double rowMaxY = row == rows - 1 ? this.maxY : rowMinY + cellHeight;
+			for (int column = 0; column < columns; column++) {
+				int cell = row * columns + column;
+				// The leftmost cell of a row extends to the left without end.
+				double cellMinX = column == 0 ? Double.NEGATIVE_INFINITY : this.minX + column * cellWidth;
+				double cellMaxX = column == columns - 1 ? this.maxX : this.minX + (column + 1) * cellWidth;
+
+				// The edges of the cell, and whether the ray crosses the same ones from every point of the cell.
+				int candidateCount = 0;
+				boolean uniform = true;
+				for (int i = 0; i < edges; i++) {
+					double edgeMinY = Math.min(y1[i], y2[i]);
+					double edgeMaxY = Math.max(y1[i], y2[i]);
+					double edgeMinX = Math.min(x1[i], x2[i]);
+					double edgeMaxX = Math.max(x1[i], x2[i]);
+					if (edgeMaxY < rowMinY - margin || edgeMinY > rowMaxY + margin || edgeMaxX < cellMinX - margin) {
+						continue;
+					}
+					candidates[candidateCount++] = i;
+					if (edgeMinX <= cellMaxX + margin || edgeMinY >= rowMinY - margin || edgeMaxY <= rowMaxY + margin) {
+						uniform = false;
+					}
+				}
+				if (uniform) {
+					// Every edge of the cell lies to the right of the cell and spans its row, so its crossing
+					// is the same from every point of the cell.
+					state[cell] = candidateCount % 2 == 0 ? OUTSIDE : INSIDE;
+				} else {
+					state[cell] = BOUNDARY;
+					if (count + candidateCount > cellEdges.length) {
+						cellEdges = Arrays.copyOf(cellEdges, Math.max(2 * cellEdges.length, count + candidateCount));
+					}
+					System.arraycopy(candidates, 0, cellEdges, count, candidateCount);
+					count += candidateCount;
+				}
+				cellStart[cell + 1] = count;
+			}
+		}
+		this.cellEdges = Arrays.copyOf(cellEdges, count);
+	}
+
+	/**
+	 * Check if a location (x,y) is inside the polygon.
+	 *
+	 * @param x x coordinate of the location
+	 * @param y y coordinate of the location
+	 * @return true if the location is inside the polygon
+	 */
+	boolean contains(double x, double y) {
+		// The ray from a point above, below or to the right of the edges crosses none of them.
+		if (!(y >= minY && y <= maxY && x <= maxX)) {
+			return false;
+		}
+		int row = Math.min(rows - 1, (int) ((y - minY) / cellHeight));
+		int column = x < minX ? 0 : Math.min(columns - 1, (int) ((x - minX) / cellWidth));
+		// Rounding may put a point just outside of the cell that is computed; use the cell it is in.
+		while (row > 0 && y < minY + row * cellHeight) {
+			row--;
+		}
+		while (row < rows - 1 && y >= minY + (row + 1) * cellHeight) {
+			row++;
+		}
+		while (column > 0 && x < minX + column * cellWidth) {
+			column--;
+		}
+		while (column < columns - 1 && x >= minX + (column + 1) * cellWidth) {
+			column++;
+		}
+		int cell = row * columns + column;
+		if (state[cell] != BOUNDARY) {
+			return state[cell] == INSIDE;
+		}
+		int count = 0;
+		for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+			int i = cellEdges[k];
+			double beta = (y - y1[i]) / (y2[i] - y1[i]);
+			double alpha = x1[i] + beta * (x2[i] - x1[i]) - x;
+			if (alpha > 0 && 0 <= beta && beta <= 1) {
+				count++;
+			}
+		}
+		return count % 2 == 1;
+	}
+}
@@ -58,14 +58,13 @@ public class AgentRandomDestination extends BaseAgent {
 		
 		route.clear();
 		Intersection sourceIntersection = currentLocation.road.to;
-		int destinationIndex = rnd.nextInt(map.intersections().size());
-		Intersection[] intersectionArray = map.intersections().values().toArray(new Intersection[map.intersections().size()]);
-		Intersection destinationIntersection = intersectionArray[destinationIndex];
+		int destinationIndex = rnd.nextInt(map.intersectionCount());
+		Intersection destinationIntersection = map.intersectionAt(destinationIndex);
 		if (destinationIntersection == sourceIntersection) {
 			// destination cannot be the source
 			// if destination is the source, choose a neighbor to be the destination
-			Road[] roadsFrom = sourceIntersection.roadsMapFrom.values().toArray(new Road[sourceIntersection.roadsMapFrom.values().size()]);
-			destinationIntersection = roadsFrom[0].to;
+			Road roadFrom = sourceIntersection.roadsMapFrom.values().iterator().next();
+			destinationIntersection = roadFrom.to;
 		}
 		route = map.shortestTravelTimePath(sourceIntersection, destinationIntersection);
 		route.poll(); // Ensure that route.get(0) != currentLocation.road.to.
@@ -94,6 +93,24 @@ public class AgentRandomDestination extends BaseAgent {
 		}		
 	}
 
+	/**
+	 * This method hands the whole remaining route to the Simulator so that the agent is not called back at
+	 * every intersection along it. When the route is finished, a new route is planned first.
+	 *
+	 * @return the intersections that the Agent is going to move through.
+	 */
+
+	@Override
+	public List<Intersection> nextRoute(LocationOnRoad currentLocation, long currentTime) {
+		if (route.size() == 0) {
+			// Finished the planned route. Plan a new route.
+			planSearchRoute(currentLocation, currentTime);
+		}
+		LinkedList<Intersection> committedRoute = route;
+		route = new LinkedList<Intersection>();
+		return committedRoute;
+	}
+
 	/**
 	 * A dummy implementation of the assignedTo callback function which does nothing but clearing the current route.
 	 * assignedTo is called when the agent is assigned to a resource.
@@ -52,7 +52,11 @@ public class AgentRandomWalk extends BaseAgent {
 		Intersection currentIntersection = currentLocation.road.to;
 		int s = currentIntersection.getAdjacentFrom().size();
 		int j = rnd.nextInt(s);
-		Intersection nextIntersection = (Intersection) currentIntersection.getAdjacentFrom().toArray()[j];
+		Iterator<Intersection> adjacent = currentIntersection.getAdjacentFrom().iterator();
+		for (int i = 0; i < j; i++) {
+			adjacent.next();
+		}
+		Intersection nextIntersection = adjacent.next();
 		route.add(nextIntersection); 
 	}
 
@@ -0,0 +1,62 @@
+package COMSETsystem;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorTravelTimeKernel class is the implementation of TravelTimeKernel with the vector API of JDK 17.
+ * It gathers the travel times of as many candidates as fit in a vector register from the travel time table,
+ * adds their travel times to the end of their roads, and keeps the smallest travel time and its candidate per
+ * lane. The lanes are combined at the end, taking the smallest candidate among the lanes with the smallest travel
+ * time, so the result is the same as that of the scalar kernel.
+ *
+ * The travel times are added as ints, which cannot overflow since the table holds at most
+ * CityMap.UNREACHABLE_TRAVEL_TIME and the travel time to the end of a road is the travel time of a road.
+ *
+ * This class is compiled into META-INF/versions/17 of the multi-release jar by the java17 profile in pom.xml
+ * and loaded by TravelTimeKernel.get().
+ */
+public class VectorTravelTimeKernel extends TravelTimeKernel {
+
+	// The widest vector shape of the processor
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public int argmin(int[] travelTimeTable, int target, int[] rowOffsets, int[] travelTimesToEnd, int from, int to) {
+		int lanes = SPECIES.length();
+		int vectorEnd = from + (to - from) / lanes * lanes;
+		if (vectorEnd == from) {
+			return super.argmin(travelTimeTable, target, rowOffsets, travelTimesToEnd, from, to);
+		}
+
+		IntVector bestTravelTimes = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+		IntVector bestCandidates = IntVector.broadcast(SPECIES, -1);
+		IntVector candidates = IntVector.zero(SPECIES).addIndex(1).add(from);
+		IntVector step = IntVector.broadcast(SPECIES, lanes);
+		for (int i = from; i < vectorEnd; i += lanes) {
+			IntVector travelTimes = IntVector.fromArray(SPECIES, travelTimeTable, target, rowOffsets, i)
+					.add(IntVector.fromArray(SPECIES, travelTimesToEnd, i));
+			// Strictly smaller, so that each lane keeps its first candidate among equal travel times.
+			VectorMask<Integer> smaller = travelTimes.lt(bestTravelTimes);
+			bestTravelTimes = bestTravelTimes.blend(travelTimes, smaller);
+			bestCandidates = bestCandidates.blend(candidates, smaller);
+			candidates = candidates.add(step);
+		}
+
+		int bestTravelTime = bestTravelTimes.reduceLanes(VectorOperators.MIN);
+		VectorMask<Integer> isBest = bestTravelTimes.eq(bestTravelTime);
+		int best = bestCandidates.blend(Integer.MAX_VALUE, isBest.not()).reduceLanes(VectorOperators.MIN);
+
+		// The remaining candidates come after all candidates of the vector loop.
+		for (int i = vectorEnd; i < to; i++) {
+			int travelTime = travelTimesToEnd[i] + travelTimeTable[rowOffsets[i] + target];
+			if (travelTime < bestTravelTime) {
+				bestTravelTime = travelTime;
+				best = i;
+			}
+		}
+		return best;
+	}
+}
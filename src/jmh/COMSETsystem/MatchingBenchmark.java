@@ -0,0 +1,113 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import UserExamples.AgentRandomWalk;
+
+/**
+ * Measures the search for the nearest empty agent of each matcher on a grid map. Run with the GC profiler
+ * (java -jar target/benchmarks.jar Matching -prof gc) to check that the search allocates nothing per candidate
+ * agent: gc.alloc.rate.norm must not grow with the number of agents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchingBenchmark {
+
+	// The number of intersections along each side of the grid
+	private static final int GRID_SIZE = 40;
+
+	@Param({"COMSETsystem.ScanMatcher", "COMSETsystem.IndexMatcher", "COMSETsystem.ReverseSearchMatcher"})
+	public String matcherClass;
+
+	@Param({"100", "1000"})
+	public int agents;
+
+	private Simulator simulator;
+	private ResourceEvent[] resources;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		CityMap map = gridMap();
+		map.calcTravelTimes();
+
+		simulator = new Simulator(AgentRandomWalk.class);
+		simulator.map = map;
+		simulator.ResourceMaximumLifeTime = 600;
+		simulator.matcher = Class.forName(matcherClass).asSubclass(Matcher.class).getConstructor(Simulator.class).newInstance(simulator);
+
+		Random random = new Random(1);
+		Road[] roads = map.roads().toArray(new Road[0]);
+		for (int i = 0; i < agents; i++) {
+			Road road = roads[random.nextInt(roads.length)];
+			AgentEvent agent = new AgentEvent(new LocationOnRoad(road, road.travelTime), 0, simulator);
+			agent.setEvent(0, new LocationOnRoad(road, road.travelTime), AgentEvent.INTERSECTION_REACHED);
+			simulator.matcher.onAgentEmpty(agent, 0);
+		}
+		resources = new ResourceEvent[1024];
+		for (int i = 0; i < resources.length; i++) {
+			Road pickupRoad = roads[random.nextInt(roads.length)];
+			Road dropoffRoad = roads[random.nextInt(roads.length)];
+			resources[i] = new ResourceEvent(new LocationOnRoad(pickupRoad, random.nextInt((int) pickupRoad.travelTime + 1)), new LocationOnRoad(dropoffRoad, 0), 0, simulator);
+		}
+	}
+
+	/*
+	 * A grid of two-way roads of 100 meters.
+	 */
+	private static CityMap gridMap() {
+		TreeMap<Long, Intersection> intersections = new TreeMap<>();
+		Intersection[][] grid = new Intersection[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				long id = x * GRID_SIZE + y;
+				grid[x][y] = new Intersection(new Vertex(x * 0.001, y * 0.001, x * 100, y * 100, id));
+				intersections.put(id, grid[x][y]);
+			}
+		}
+		ArrayList<Road> roads = new ArrayList<>();
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					roads.add(road(grid[x][y], grid[x + 1][y]));
+					roads.add(road(grid[x + 1][y], grid[x][y]));
+				}
+				if (y + 1 < GRID_SIZE) {
+					roads.add(road(grid[x][y], grid[x][y + 1]));
+					roads.add(road(grid[x][y + 1], grid[x][y]));
+				}
+			}
+		}
+		return new CityMap(intersections, roads, null, null);
+	}
+
+	private static Road road(Intersection from, Intersection to) {
+		return new Road(from, to, Collections.singletonList(new Link(from.vertex, to.vertex, 100, 10)));
+	}
+
+	@Benchmark
+	public AgentEvent findAgentFor() {
+		next = (next + 1) & (resources.length - 1);
+		return simulator.matcher.findAgentFor(resources[next]);
+	}
+}
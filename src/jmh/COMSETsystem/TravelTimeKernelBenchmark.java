@@ -0,0 +1,80 @@
+package COMSETsystem;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar TravelTimeKernel with the kernel returned by TravelTimeKernel.get(), which is the
+ * VectorTravelTimeKernel when the benchmark runs on JDK 17 or later. The travel time table and the candidates
+ * are random, with the size of the Manhattan map and of the number of agents of the default configuration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class TravelTimeKernelBenchmark {
+
+	@Param({"4500"})
+	public int intersections;
+
+	@Param({"500", "5000"})
+	public int candidates;
+
+	private int[] travelTimeTable;
+	private int[] rowOffsets;
+	private int[] travelTimesToEnd;
+	private int[] targets;
+	private int next;
+
+	private final TravelTimeKernel scalar = new TravelTimeKernel();
+	private final TravelTimeKernel fastest = TravelTimeKernel.get();
+
+	@Setup
+	public void setup() {
+		System.out.println("Kernel: " + fastest.getClass().getName());
+		Random random = new Random(1);
+		travelTimeTable = new int[intersections * intersections];
+		for (int i = 0; i < travelTimeTable.length; i++) {
+			travelTimeTable[i] = random.nextInt(3600);
+		}
+		rowOffsets = new int[candidates];
+		travelTimesToEnd = new int[candidates];
+		for (int i = 0; i < candidates; i++) {
+			rowOffsets[i] = random.nextInt(intersections) * intersections;
+			travelTimesToEnd[i] = random.nextInt(60);
+		}
+		targets = new int[1024];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = random.nextInt(intersections);
+		}
+	}
+
+	private int nextTarget() {
+		next = (next + 1) & (targets.length - 1);
+		return targets[next];
+	}
+
+	@Benchmark
+	public int scalar() {
+		return scalar.argmin(travelTimeTable, nextTarget(), rowOffsets, travelTimesToEnd, 0, candidates);
+	}
+
+	@Benchmark
+	public int fastest() {
+		return fastest.argmin(travelTimeTable, nextTarget(), rowOffsets, travelTimesToEnd, 0, candidates);
+	}
+}
@@ -0,0 +1,68 @@
+package COMSETsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the same simulation on a created map, which is compiled into a compiled map file, and on the map loaded
+ * from that file, and checks that both runs have the same results. The synthetic map has roads that a later
+ * road between the same intersections replaced in the roads of the intersections (see SyntheticCity).
+ */
+public class CompiledMapSimulationTest {
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	private static SyntheticCity city;
+
+	@BeforeClass
+	public static void createFiles() throws IOException {
+		city = new SyntheticCity(folder.getRoot(), 20, 1500);
+	}
+
+	@Test
+	public void loadedMapRunsTheSameAsCreatedMap() throws Exception {
+		String compiledMapFile = new File(folder.getRoot(), "map.comset").getPath();
+
+		Simulator created = simulate(compiledMapFile);
+		assertTrue("the created map is compiled", new File(compiledMapFile).isFile());
+
+		// The map has roads that are replaced in the roads of their intersections, yet still hold links.
+		Set<Road> roads = new HashSet<>(created.map.roads());
+		boolean replacedRoads = false;
+		for (Road road : created.map.roads()) {
+			for (Link link : road.links) {
+				for (Link other : link.from.getLinksFrom()) {
+					replacedRoads |= other.getRoad() != null && !roads.contains(other.getRoad());
+				}
+			}
+		}
+		assertTrue("the map has replaced roads", replacedRoads);
+
+		Simulator loaded = simulate(compiledMapFile);
+
+		assertEquals(created.map.roadCount(), loaded.map.roadCount());
+		assertEquals(created.map.intersectionCount(), loaded.map.intersectionCount());
+		SyntheticCity.assertSameResults(created, loaded);
+		assertTrue("resources are assigned", created.totalAssignments > 0);
+	}
+
+	/*
+	 * Run a simulation with the compiled map file, which is created if it does not exist yet.
+	 */
+	private static Simulator simulate(String compiledMapFile) throws Exception {
+		Simulator simulator = city.simulator(ScanMatcher.class);
+		simulator.setCompiledMapFile(compiledMapFile);
+		return city.run(simulator, 40);
+	}
+}
@@ -0,0 +1,178 @@
+package COMSETsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that the matchers find the same agents and resources as a ScanMatcher that scans sequentially. Each
+ * checked matcher compares every search it makes with that of a sequential ScanMatcher on the same simulator
+ * (see Checks), and the simulation as a whole must have the same results as with the ScanMatcher.
+ */
+public class MatcherTest {
+
+	@ClassRule
+	public static final TemporaryFolder folder = new TemporaryFolder();
+
+	private static SyntheticCity city;
+
+	@BeforeClass
+	public static void createFiles() throws IOException {
+		city = new SyntheticCity(folder.getRoot(), 20, 1500);
+	}
+
+	@Test
+	public void indexMatcherFindsTheSameAgentsAsScanMatcher() throws Exception {
+		Simulator expected = city.run(city.simulator(ScanMatcher.class), 40);
+		Simulator actual = city.run(city.simulator(CheckedIndexMatcher.class), 40);
+
+		Checks checks = ((CheckedIndexMatcher) actual.matcher).checks;
+		assertTrue("agents are searched", checks.agentsFound > 0);
+		assertEquals(0, checks.mismatches);
+		SyntheticCity.assertSameResults(expected, actual);
+	}
+
+	@Test
+	public void indexMatcherFindsTheSameResourcesAsScanMatcher() throws Exception {
+		// With few agents, the resources wait, and an agent that drops off a resource searches them.
+		Simulator expected = city.run(city.simulator(ScanMatcher.class), 5);
+		Simulator actual = city.run(city.simulator(CheckedIndexMatcher.class), 5);
+
+		Checks checks = ((CheckedIndexMatcher) actual.matcher).checks;
+		assertTrue("waiting resources are searched", checks.resourcesFound > 0);
+		assertEquals(0, checks.mismatches);
+		SyntheticCity.assertSameResults(expected, actual);
+	}
+
+	@Test
+	public void reverseSearchMatcherFindsTheSameAgentsAsScanMatcher() throws Exception {
+		Simulator expected = city.run(city.simulator(ScanMatcher.class), 40);
+		Simulator simulator = city.simulator(CheckedReverseSearchMatcher.class);
+		// Search in reverse however few agents are empty, instead of scanning them.
+		simulator.setMatcherScanThreshold(0);
+		Simulator actual = city.run(simulator, 40);
+
+		Checks checks = ((CheckedReverseSearchMatcher) actual.matcher).checks;
+		assertTrue("agents are searched", checks.agentsFound > 0);
+		assertEquals(0, checks.mismatches);
+		SyntheticCity.assertSameResults(expected, actual);
+	}
+
+	@Test
+	public void parallelScanFindsTheSameAgentsAsSequentialScan() throws Exception {
+		// With many agents, several agents often reach a resource at the same time, also in different chunks.
+		Simulator expected = city.run(city.simulator(ScanMatcher.class), 400);
+		Simulator simulator = city.simulator(CheckedScanMatcher.class);
+		// Scan in parallel however few agents are empty.
+		simulator.setMatcherParallelThreshold(1);
+		Simulator actual = city.run(simulator, 400);
+
+		Checks checks = ((CheckedScanMatcher) actual.matcher).checks;
+		assertTrue("agents are searched", checks.agentsFound > 0);
+		assertEquals(0, checks.mismatches);
+		SyntheticCity.assertSameResults(expected, actual);
+	}
+
+	/**
+	 * Counts the searches of a matcher, and the searches in which it finds another agent or resource than a
+	 * ScanMatcher that scans sequentially.
+	 */
+	static class Checks {
+
+		// The sequential ScanMatcher
+		private final ScanMatcher reference;
+
+		// The number of searches that find an agent or a resource, and that find another one than the reference
+		int agentsFound = 0;
+		int resourcesFound = 0;
+		int mismatches = 0;
+
+		Checks(Simulator simulator) {
+			int parallelThreshold = simulator.matcherParallelThreshold;
+			simulator.matcherParallelThreshold = Integer.MAX_VALUE;
+			reference = new ScanMatcher(simulator);
+			simulator.matcherParallelThreshold = parallelThreshold;
+		}
+
+		AgentEvent agentFor(ResourceEvent resource, AgentEvent agent) {
+			if (agent != null) {
+				agentsFound++;
+			}
+			if (agent != reference.findAgentFor(resource)) {
+				mismatches++;
+			}
+			return agent;
+		}
+
+		ResourceEvent resourceFor(AgentEvent agent, ResourceEvent resource) {
+			if (resource != null) {
+				resourcesFound++;
+			}
+			if (resource != reference.findResourceFor(agent)) {
+				mismatches++;
+			}
+			return resource;
+		}
+	}
+
+	public static class CheckedIndexMatcher extends IndexMatcher {
+
+		final Checks checks;
+
+		public CheckedIndexMatcher(Simulator simulator) {
+			super(simulator);
+			checks = new Checks(simulator);
+		}
+
+		@Override
+		public AgentEvent findAgentFor(ResourceEvent resource) {
+			return checks.agentFor(resource, super.findAgentFor(resource));
+		}
+
+		@Override
+		public ResourceEvent findResourceFor(AgentEvent agent) {
+			return checks.resourceFor(agent, super.findResourceFor(agent));
+		}
+	}
+
+	public static class CheckedReverseSearchMatcher extends ReverseSearchMatcher {
+
+		final Checks checks;
+
+		public CheckedReverseSearchMatcher(Simulator simulator) {
+			super(simulator);
+			checks = new Checks(simulator);
+		}
+
+		@Override
+		public AgentEvent findAgentFor(ResourceEvent resource) {
+			return checks.agentFor(resource, super.findAgentFor(resource));
+		}
+
+		@Override
+		public ResourceEvent findResourceFor(AgentEvent agent) {
+			return checks.resourceFor(agent, super.findResourceFor(agent));
+		}
+	}
+
+	public static class CheckedScanMatcher extends ScanMatcher {
+
+		final Checks checks;
+
+		public CheckedScanMatcher(Simulator simulator) {
+			super(simulator);
+			checks = new Checks(simulator);
+		}
+
+		@Override
+		public AgentEvent findAgentFor(ResourceEvent resource) {
+			return checks.agentFor(resource, super.findAgentFor(resource));
+		}
+	}
+}
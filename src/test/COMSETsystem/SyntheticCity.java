@@ -0,0 +1,167 @@
+package COMSETsystem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.LogManager;
+
+/**
+ * A synthetic city for the simulation tests: a map JSON file of a grid of streets with extra ways that run
+ * parallel to a street between two neighboring intersections, a KML file of a rectangle around the grid, and a
+ * resource file of trips between random locations on the grid. The map creator creates two roads between the
+ * intersections at the ends of a parallel way, of which only the later one is kept in the roads of the
+ * intersections. The files are random but the same for the same seed.
+ */
+class SyntheticCity {
+
+	// The number of intersections along each side of the grid, and the distance between them in degrees
+	static final int GRID = 12;
+	static final double STEP = 0.0012;
+
+	// The south west corner of the grid
+	static final double LATITUDE = 40.74;
+	static final double LONGITUDE = -73.99;
+
+	// The files of the city
+	final File mapFile;
+	final File kmlFile;
+	final File resourceFile;
+
+	/**
+	 * Write the files of a city into a folder.
+	 *
+	 * @param folder the folder to write the files into
+	 * @param parallelWays the number of ways that run parallel to a street
+	 * @param trips the number of trips, which start four seconds apart
+	 * @throws IOException if a file cannot be written
+	 */
+	SyntheticCity(File folder, int parallelWays, int trips) throws IOException {
+		LogManager.getLogManager().reset();
+		mapFile = new File(folder, "map.json");
+		kmlFile = new File(folder, "boundary.kml");
+		resourceFile = new File(folder, "trips.csv");
+		Random random = new Random(7);
+
+		// the nodes of the grid, and of the parallel ways
+		List<String> elements = new ArrayList<>();
+		for (int i = 0; i < GRID; i++) {
+			for (int j = 0; j < GRID; j++) {
+				elements.add(node(nodeId(i, j), LATITUDE + i * STEP, LONGITUDE + j * STEP));
+			}
+		}
+		int way = 1;
+		for (int i = 0; i < GRID; i++) {
+			StringBuilder row = new StringBuilder();
+			StringBuilder column = new StringBuilder();
+			for (int j = 0; j < GRID; j++) {
+				row.append(j == 0 ? "" : ",").append(nodeId(i, j));
+				column.append(j == 0 ? "" : ",").append(nodeId(j, i));
+			}
+			elements.add(way(way++, row.toString(), i % 3 == 1));
+			elements.add(way(way++, column.toString(), false));
+		}
+		long parallelNode = 100000;
+		for (int k = 0; k < parallelWays; k++) {
+			int i = 1 + random.nextInt(GRID - 2);
+			int j = 1 + random.nextInt(GRID - 2);
+			elements.add(node(parallelNode, LATITUDE + i * STEP + STEP / 4, LONGITUDE + (j + 0.5) * STEP));
+			elements.add(way(way++, nodeId(i, j) + "," + parallelNode + "," + nodeId(i, j + 1), k % 2 == 1));
+			parallelNode++;
+		}
+		try (PrintWriter out = new PrintWriter(mapFile)) {
+			out.println("{\"version\": 0.6, \"elements\": [" + String.join(",\n", elements) + "]}");
+		}
+
+		// a bounding polygon around the grid
+		double minLatitude = LATITUDE - STEP / 2;
+		double minLongitude = LONGITUDE - STEP / 2;
+		double maxLatitude = LATITUDE + (GRID - 0.5) * STEP;
+		double maxLongitude = LONGITUDE + (GRID - 0.5) * STEP;
+		try (PrintWriter out = new PrintWriter(kmlFile)) {
+			out.println("<kml>");
+			out.println("<Polygon>");
+			out.println("<coordinates>");
+			out.println(minLongitude + "," + minLatitude + ",0 " + maxLongitude + "," + minLatitude + ",0 "
+					+ maxLongitude + "," + maxLatitude + ",0 " + minLongitude + "," + maxLatitude + ",0");
+			out.println("</coordinates>");
+			out.println("</Polygon>");
+			out.println("</kml>");
+		}
+
+		// trips between random locations on the grid, in time order
+		try (PrintWriter out = new PrintWriter(resourceFile)) {
+			out.println("VendorID,tpep_pickup_datetime,tpep_dropoff_datetime,passenger_count,trip_distance,pickup_longitude,pickup_latitude,RatecodeID,store_and_fwd_flag,dropoff_longitude,dropoff_latitude,payment_type");
+			for (int k = 0; k < trips; k++) {
+				int time = k * 4;
+				String timestamp = String.format("2016-06-01 %02d:%02d:%02d", 8 + time / 3600, time % 3600 / 60, time % 60);
+				out.println("2," + timestamp + "," + timestamp + ",1,1.0,"
+						+ (LONGITUDE + random.nextDouble() * (GRID - 1) * STEP) + "," + (LATITUDE + random.nextDouble() * (GRID - 1) * STEP)
+						+ ",1,N," + (LONGITUDE + random.nextDouble() * (GRID - 1) * STEP) + "," + (LATITUDE + random.nextDouble() * (GRID - 1) * STEP) + ",1");
+			}
+		}
+	}
+
+	/**
+	 * Create a simulator of WalkingAgents in the city, which is configured once its settings are made.
+	 *
+	 * @param matcherClass the matcher of the simulator
+	 * @return the simulator
+	 */
+	Simulator simulator(Class<? extends Matcher> matcherClass) {
+		WalkingAgent.created = 0;
+		Simulator simulator = new Simulator(WalkingAgent.class);
+		simulator.setMatcherClass(matcherClass);
+		simulator.setZoneId(ZoneId.of("America/New_York"));
+		return simulator;
+	}
+
+	/**
+	 * Configure a simulator in the city and run it.
+	 *
+	 * @param simulator the simulator, with its settings made
+	 * @param agents the number of agents
+	 * @return the simulator
+	 * @throws Exception if the simulation fails
+	 */
+	Simulator run(Simulator simulator, long agents) throws Exception {
+		simulator.configure(mapFile.getPath(), resourceFile.getPath(), agents, kmlFile.getPath(), 600L, 1, 4);
+		simulator.run();
+		return simulator;
+	}
+
+	/**
+	 * Check that two simulations have the same results.
+	 *
+	 * @param expected the simulator of the first simulation
+	 * @param actual the simulator of the second simulation
+	 */
+	static void assertSameResults(Simulator expected, Simulator actual) {
+		assertEquals(expected.totalResources, actual.totalResources);
+		assertEquals(expected.totalAssignments, actual.totalAssignments);
+		assertEquals(expected.expiredResources, actual.expiredResources);
+		assertEquals(expected.totalResourceWaitTime, actual.totalResourceWaitTime);
+		assertEquals(expected.totalResourceTripTime, actual.totalResourceTripTime);
+		assertEquals(expected.totalAgentSearchTime, actual.totalAgentSearchTime);
+		assertEquals(expected.totalAgentCruiseTime, actual.totalAgentCruiseTime);
+		assertEquals(expected.totalAgentApproachTime, actual.totalAgentApproachTime);
+	}
+
+	private static long nodeId(int i, int j) {
+		return 1000 + i * GRID + j;
+	}
+
+	private static String node(long id, double latitude, double longitude) {
+		return "{\"type\": \"node\", \"id\": " + id + ", \"lat\": " + latitude + ", \"lon\": " + longitude + "}";
+	}
+
+	private static String way(long id, String nodes, boolean oneway) {
+		return "{\"type\": \"way\", \"id\": " + id + ", \"nodes\": [" + nodes + "], \"tags\": {\"highway\": \"residential\""
+				+ (oneway ? ", \"oneway\": \"yes\"" : "") + "}}";
+	}
+}
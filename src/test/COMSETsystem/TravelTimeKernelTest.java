@@ -0,0 +1,51 @@
+package COMSETsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNoException;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the vector kernel finds the same candidate as the scalar kernel on random travel time tables,
+ * with many ties and with ranges of candidates that do not fill the vectors. The vector kernel is only
+ * available on JDK 17 or later (see the java17 profile in pom.xml); elsewhere the test is skipped.
+ */
+public class TravelTimeKernelTest {
+
+	@Test
+	public void vectorKernelFindsTheSameCandidateAsScalarKernel() {
+		TravelTimeKernel vector = null;
+		try {
+			vector = (TravelTimeKernel) Class.forName("COMSETsystem.VectorTravelTimeKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			assumeNoException(e);
+		}
+		TravelTimeKernel scalar = new TravelTimeKernel();
+
+		Random random = new Random(3);
+		for (int round = 0; round < 2000; round++) {
+			int intersections = 1 + random.nextInt(20);
+			// few different travel times, so that candidates often tie
+			int[] travelTimeTable = new int[intersections * intersections];
+			for (int i = 0; i < travelTimeTable.length; i++) {
+				travelTimeTable[i] = random.nextInt(50) == 0 ? CityMap.UNREACHABLE_TRAVEL_TIME : random.nextInt(8);
+			}
+			int candidates = random.nextInt(70);
+			int[] rowOffsets = new int[candidates];
+			int[] travelTimesToEnd = new int[candidates];
+			for (int i = 0; i < candidates; i++) {
+				rowOffsets[i] = random.nextInt(intersections) * intersections;
+				travelTimesToEnd[i] = random.nextInt(4);
+			}
+			int from = candidates == 0 ? 0 : random.nextInt(candidates);
+			int to = from + random.nextInt(candidates - from + 1);
+			int target = random.nextInt(intersections);
+
+			assertEquals("round " + round,
+					scalar.argmin(travelTimeTable, target, rowOffsets, travelTimesToEnd, from, to),
+					vector.argmin(travelTimeTable, target, rowOffsets, travelTimesToEnd, from, to));
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package COMSETsystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An agent that walks to a random neighbor at every intersection. Its random number generator is seeded by
+ * the order in which the agents of a simulation are created, as the ids of the agents differ between two
+ * simulations in the same JVM.
+ */
+public class WalkingAgent extends BaseAgent {
+
+	// The number of agents created in the current simulation
+	static long created = 0;
+
+	private final Random random = new Random(created++);
+
+	public WalkingAgent(long id, CityMap map) {
+		super(id, map);
+	}
+
+	@Override
+	public void planSearchRoute(LocationOnRoad currentLocation, long currentTime) {
+	}
+
+	@Override
+	public Intersection nextIntersection(LocationOnRoad currentLocation, long currentTime) {
+		List<Intersection> neighbors = new ArrayList<>(currentLocation.road.to.getAdjacentFrom());
+		return neighbors.get(random.nextInt(neighbors.size()));
+	}
+
+	@Override
+	public void assignedTo(LocationOnRoad currentLocation, long currentTime, long resourceId, LocationOnRoad resourcePickupLocation, LocationOnRoad resourceDropoffLocation) {
+	}
+}
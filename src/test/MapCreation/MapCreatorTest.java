@@ -0,0 +1,124 @@
+package MapCreation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the vertices that clearMap and fixMap keep on a tiny map: a two-way square 1-2-3-4 with a two-way
+ * spur to 13, a one-way chain 5-6-7 into the square, a one-way chain 8-9 out of the square, and a one-way
+ * cycle 10-11-12 that the square leads into but that does not lead back.
+ */
+public class MapCreatorTest {
+
+	// The distance between neighboring nodes in degrees, about 100 meters
+	private static final double STEP = 0.001;
+
+	// The node at position (0, 0)
+	private static final double LATITUDE = 40.74;
+	private static final double LONGITUDE = -73.99;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File mapFile;
+	private File kmlFile;
+
+	@Before
+	public void createFiles() throws IOException {
+		mapFile = folder.newFile("map.json");
+		kmlFile = folder.newFile("boundary.kml");
+
+		List<String> elements = new ArrayList<>();
+		elements.add(node(1, 0, 0));
+		elements.add(node(2, 0, 1));
+		elements.add(node(3, 1, 1));
+		elements.add(node(4, 1, 0));
+		elements.add(node(5, 0, -3));
+		elements.add(node(6, 0, -2));
+		elements.add(node(7, 0, -1));
+		elements.add(node(8, 0, 2));
+		elements.add(node(9, 0, 3));
+		elements.add(node(10, 2, 1));
+		elements.add(node(11, 3, 1));
+		elements.add(node(12, 3, 2));
+		elements.add(node(13, 1, -1));
+		elements.add(way(1, "1,2,3,4,1", false));
+		elements.add(way(2, "5,6,7,1", true));
+		elements.add(way(3, "2,8,9", true));
+		elements.add(way(4, "3,10", true));
+		elements.add(way(5, "10,11,12,10", true));
+		elements.add(way(6, "4,13", false));
+		try (PrintWriter out = new PrintWriter(mapFile)) {
+			out.println("{\"version\": 0.6, \"elements\": [" + String.join(",\n", elements) + "]}");
+		}
+
+		// a bounding polygon around all the nodes
+		double minLatitude = LATITUDE - STEP;
+		double minLongitude = LONGITUDE - 4 * STEP;
+		double maxLatitude = LATITUDE + 4 * STEP;
+		double maxLongitude = LONGITUDE + 4 * STEP;
+		try (PrintWriter out = new PrintWriter(kmlFile)) {
+			out.println("<kml>");
+			out.println("<Polygon>");
+			out.println("<coordinates>");
+			out.println(minLongitude + "," + minLatitude + ",0 " + maxLongitude + "," + minLatitude + ",0 "
+					+ maxLongitude + "," + maxLatitude + ",0 " + minLongitude + "," + maxLatitude + ",0");
+			out.println("</coordinates>");
+			out.println("</Polygon>");
+			out.println("</kml>");
+		}
+	}
+
+	@Test
+	public void clearMapRemovesDeadEndChains() {
+		MapCreator creator = new MapCreator(mapFile.getPath(), kmlFile.getPath(), 1.0);
+		assertEquals(vertexIds(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13), new TreeSet<>(creator.vertices.keySet()));
+
+		// The chains become dead ends one vertex after the other, while the cycle has no dead end.
+		creator.clearMap();
+		assertEquals(vertexIds(1, 2, 3, 4, 10, 11, 12, 13), new TreeSet<>(creator.vertices.keySet()));
+	}
+
+	@Test
+	public void fixMapKeepsTheLargestStronglyConnectedComponent() {
+		MapCreator creator = new MapCreator(mapFile.getPath(), kmlFile.getPath(), 1.0);
+		creator.fixMap();
+		assertEquals(vertexIds(1, 2, 3, 4, 13), new TreeSet<>(creator.vertices.keySet()));
+	}
+
+	@Test
+	public void fixMapAfterClearMapRemovesTheCycle() {
+		MapCreator creator = new MapCreator(mapFile.getPath(), kmlFile.getPath(), 1.0);
+		creator.clearMap();
+		creator.fixMap();
+		assertEquals(vertexIds(1, 2, 3, 4, 13), new TreeSet<>(creator.vertices.keySet()));
+	}
+
+	private static TreeSet<Long> vertexIds(long... ids) {
+		TreeSet<Long> set = new TreeSet<>();
+		for (long id : ids) {
+			set.add(id);
+		}
+		return set;
+	}
+
+	private static String node(long id, int i, int j) {
+		return "{\"type\": \"node\", \"id\": " + id + ", \"lat\": " + (LATITUDE + i * STEP) + ", \"lon\": " + (LONGITUDE + j * STEP) + "}";
+	}
+
+	private static String way(long id, String nodes, boolean oneway) {
+		return "{\"type\": \"way\", \"id\": " + id + ", \"nodes\": [" + nodes + "], \"tags\": {\"highway\": \"residential\""
+				+ (oneway ? ", \"oneway\": \"yes\"" : "") + "}}";
+	}
+}